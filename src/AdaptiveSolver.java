@@ -0,0 +1,183 @@
+import javafx.geometry.Point3D;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wraps another solver and splits each step into as many substeps as are needed to keep it stable. Before every step it finds how far the fastest vertex
+ * would move compared to the length of its shortest connection, if that's more than a safe fraction the step is split up. Calm scenes only take one substep,
+ * collisions and fast-forwarding take more
+ */
+public class AdaptiveSolver implements PhysicsSolver {
+    /**
+     * the solver that actually moves the vertices, the JavaFX thread swaps it while the simulation thread is stepping
+     */
+    private volatile PhysicsSolver solver;
+
+    /**
+     * the furthest a vertex should move in one substep, as a fraction of its shortest connection
+     */
+    private final double maxDisplacementRatio = 0.25;
+
+    /**
+     * the most substeps a single step can be split into, so one violent frame can't stall the game
+     */
+    private final int maxSubsteps = 8;
+
+    /**
+     * the number of substeps taken by all amoebas so far this tick, atomic since amoebas can be stepped in parallel
+     */
+    private final AtomicInteger substepsThisTick = new AtomicInteger();
+
+    /**
+     * the number of substeps taken by all amoebas in the last tick, volatile since the stats below are written on the simulation thread and read by the
+     * JavaFX and JMX threads
+     */
+    private volatile int lastTickSubsteps = 0;
+
+    /**
+     * the most substeps taken by all amoebas in a single tick
+     */
+    private volatile int maxTickSubsteps = 0;
+
+    /**
+     * the most substeps a single amoeba took in the last tick
+     */
+    private volatile int lastTickMaxAmoebaSubsteps = 0;
+
+    /**
+     * the number of substeps a single amoeba took in the most violent step so far this tick
+     */
+    private final AtomicInteger maxAmoebaSubstepsThisTick = new AtomicInteger();
+
+    /**
+     * the total number of substeps taken since the game started, only touched by the simulation thread
+     */
+    private long totalSubsteps = 0;
+
+    /**
+     * the number of ticks since the game started, only touched by the simulation thread
+     */
+    private long ticks = 0;
+
+    /**
+     * the average number of substeps per tick, worked out at the end of each tick so other threads never see a total and tick count from different ticks
+     */
+    private volatile double averageSubstepsPerTick = 0;
+
+    /**
+     * Constructor for the adaptive solver
+     *
+     * @param solver the solver that actually moves the vertices
+     */
+    public AdaptiveSolver(PhysicsSolver solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * returns the solver that actually moves the vertices
+     */
+    public PhysicsSolver getSolver() {
+        return solver;
+    }
+
+    /**
+     * changes the solver that actually moves the vertices
+     *
+     * @param solver the new solver
+     */
+    public void setSolver(PhysicsSolver solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * works out how many substeps are needed and steps the wrapped solver that many times
+     *
+     * @param amoeba        the amoeba whose vertices should be moved
+     * @param timeStep      how far forward in time to move, normally the time scale
+     * @param frameFraction the fraction of a frame this step covers
+     */
+    @Override
+    public void step(Amoeba amoeba, double timeStep, double frameFraction) {
+        int substeps = findNumberOfSubsteps(amoeba, timeStep);
+        PhysicsSolver solver = this.solver;//every substep of an amoeba uses the same solver even if it's swapped halfway through
+        for (int i = 0; i < substeps; i++) {
+            solver.step(amoeba, timeStep / substeps, frameFraction / substeps);
+        }
+        substepsThisTick.addAndGet(substeps);
+        maxAmoebaSubstepsThisTick.accumulateAndGet(substeps, Math::max);
+    }
+
+    /**
+     * finds the largest distance a vertex would move this step relative to its shortest connection, and divides that into safe sized substeps.
+     * The average velocity of the vertices is subtracted first, since the whole amoeba swimming along doesn't stretch any connections
+     *
+     * @param amoeba   the amoeba about to be stepped
+     * @param timeStep how far forward in time it will move
+     */
+    private int findNumberOfSubsteps(Amoeba amoeba, double timeStep) {
+        Vertex[] vertices = amoeba.getVertices();
+        if (timeStep <= 0 || vertices.length == 0) {
+            return 1;
+        }
+        double xSum = 0;
+        double ySum = 0;
+        double zSum = 0;
+        for (Vertex vertex : vertices) {
+            xSum += vertex.getVelocity().getX();
+            ySum += vertex.getVelocity().getY();
+            zSum += vertex.getVelocity().getZ();
+        }
+        Point3D averageVelocity = new Point3D(xSum / vertices.length, ySum / vertices.length, zSum / vertices.length);
+        double maxRatio = 0;
+        for (Vertex vertex : vertices) {
+            double displacement = vertex.getVelocity().distance(averageVelocity) * timeStep;
+            double restLength = vertex.getShortestRestLength();
+            if (restLength > 0) {
+                maxRatio = Math.max(maxRatio, displacement / restLength);
+            }
+        }
+        int substeps = (int) Math.ceil(maxRatio / maxDisplacementRatio);
+        return Math.max(1, Math.min(maxSubsteps, substeps));
+    }
+
+    /**
+     * called once all amoebas have been updated, records the substeps taken this tick and resets the counter for the next one
+     */
+    @Override
+    public void endTick() {
+        lastTickSubsteps = substepsThisTick.getAndSet(0);
+        lastTickMaxAmoebaSubsteps = maxAmoebaSubstepsThisTick.getAndSet(0);
+        maxTickSubsteps = Math.max(maxTickSubsteps, lastTickSubsteps);
+        totalSubsteps += lastTickSubsteps;
+        ticks++;
+        averageSubstepsPerTick = (double) totalSubsteps / ticks;
+    }
+
+    /**
+     * returns the number of substeps taken by all amoebas in the last tick
+     */
+    public int getLastTickSubsteps() {
+        return lastTickSubsteps;
+    }
+
+    /**
+     * returns the most substeps a single amoeba took in the last tick
+     */
+    public int getLastTickMaxAmoebaSubsteps() {
+        return lastTickMaxAmoebaSubsteps;
+    }
+
+    /**
+     * returns the most substeps taken by all amoebas in a single tick
+     */
+    public int getMaxTickSubsteps() {
+        return maxTickSubsteps;
+    }
+
+    /**
+     * returns the average number of substeps taken by all amoebas per tick
+     */
+    public double getAverageSubstepsPerTick() {
+        return averageSubstepsPerTick;
+    }
+}
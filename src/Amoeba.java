@@ -4,10 +4,23 @@ import javafx.scene.paint.Color;
 import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.DrawMode;
 import javafx.scene.shape.Sphere;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class Amoeba {
 
-    /** array of vertices **/
-    private final Vertex[] vertices;
+    /** hands out the IDs, shared by every game so no two amoebas in the process have the same one **/
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /** identifies this amoeba in flight recorder events **/
+    private final int id = nextId.getAndIncrement();
+
+    /** the game this amoeba belongs to **/
+    private final Game game;
+
+    /** array of vertices, the remesher replaces it with a new array when it adds or removes vertices **/
+    private Vertex[] vertices;
 
     /** represents the velocity of the target center of the amoeba **/
     private Point3D velocity = new Point3D(0, 0, 0);
@@ -15,9 +28,12 @@ public class Amoeba {
     /** strength of gravity **/
     private final double gravity = -0.0025;
 
-    /** this is multiplied with velocity every frame to smooth the motion and create drag **/
+    /** this is multiplied with the velocity relative to the water every frame to smooth the motion and create drag **/
     private final double dampening = 0.9;
 
+    /** the velocity of the water around the amoeba this tick, the amoeba and its vertices are dragged towards it. Still water if the game has no fluid grid **/
+    private Point3D current = Point3D.ZERO;
+
     /** either 0 for player, 1 for food, or 2 for enemy **/
     private int type;
 
@@ -27,11 +43,11 @@ public class Amoeba {
     /** the group that the amoeba is drawn to **/
     private final Group draw;
 
-    /** tracks whether the health is changing in order to make it flash if it's the player **/
-    private boolean healthIsChanging = false;
+    /** the tick the player can next flash green or red, it flashes at most every 20 ticks while its health is changing **/
+    private long nextFlashTick = 0;
 
-    /** tracks whether health was changing but has stopped to reset the player colour back to blue **/
-    private boolean healthIsChangingAnchor = false;
+    /** the tick the current flash goes back to blue **/
+    private long flashEndsTick = 0;
 
     /** a scalar for the size of the amoeba, works as the health **/
     private double hp = 1;
@@ -39,6 +55,9 @@ public class Amoeba {
     /** initial radius of amoeba **/
     private final double initialRadius;
 
+    /** the number of vertices the amoeba was made with, before the remesher changed it **/
+    private final int initialNumberOfVertices;
+
     /** initial speed of amoeba **/
     private final double initialSpeed;
 
@@ -51,65 +70,136 @@ public class Amoeba {
     /** this represents the "true" center of the amoeba, it's the average of all the vertices **/
     Point3D trueCenter;
 
-    /** the sphere that represents the targetCenter, used for testing **/
+    /** the true center at the end of the last update, so contacts can be checked along the whole path the amoeba moved rather than only where it stopped **/
+    private Point3D previousTrueCenter;
+
+    /** where the true center started the last tick, saved before any amoeba moves so the others read the same path however the updates are scheduled **/
+    private Point3D lastPathFrom;
+
+    /** where the true center ended the last tick **/
+    private Point3D lastPathTo;
+
+    /** the sphere that represents the targetCenter, used for testing. Null if the amoeba isn't drawn **/
     private final Sphere sphere;
+
+    /** every connection between the vertices stored once, used by the position based solver and the remesher, which patches it when it changes the vertices **/
+    private ConstraintGraph constraintGraph;
+
+    /** the average length of the connections to the closest vertices when the amoeba was made, the remesher tries to keep the connections near this length **/
+    private final double targetEdgeLength;
+
+    /** whether the size has changed since the remesher last found nothing to do **/
+    private boolean remeshPending = false;
+
+    /** the vertices last pushed to the scene, only used on the JavaFX thread **/
+    private Vertex[] pushedVertices;
+
+    /** the center last pushed to the sphere **/
+    private Point3D pushedCenter;
+
+    /** the colour the vertices should be drawn in, the same codes as type. It's only state here, the render sync changes the materials **/
+    private int colour = 0;
+
+    /** the colour last pushed to the vertices, they start out as the player colour **/
+    private int pushedColour = 0;
+
+    /** whether the amoeba is still alive **/
+    private boolean alive = true;
+
+    /** whether the amoeba was alive when it was last pushed to the scene **/
+    private boolean pushedAlive = true;
+
+    /** whether the amoeba was in view of the camera when it was last pushed to the scene **/
+    private boolean pushedInView = true;
     /**
-     * Constructor for an Amoeba. It initializes instance variables, creates a sphere shape which will represent the center of the amoeba, and generates vertices in a sphere with a specified radius around the center.
+     * Constructor for an Amoeba. It initializes instance variables, creates a sphere shape which will represent the center of the amoeba, and generates vertices in a sphere with a specified radius around the center,
+     * using the template for its number of vertices.
      * finally
+     * @param game the game this amoeba belongs to, the player has to be in it already unless this is the player
+     * @param numberOfVertices the number of vertices this amoeba should have
+     * @param radius the radius of this amoeba
+     * @param draw the group to draw objects to, null for an amoeba that's only simulated and never drawn
+     * @param center a point in 3d space representing the center of the amoeba
+     */
+    public Amoeba(Game game, int numberOfVertices, int radius, Group draw, Point3D center) {
+        this(game, numberOfVertices, radius, draw, center, startingType(game, radius), game.getRandom());
+        updateSpeed();
+    }
+    /**
+     * Constructor for an Amoeba that starts as a given type instead of comparing itself with the player. Used for amoebas built on other threads while the
+     * game is running, which can't safely look at the game's amoebas. The game compares them with the player when they join
+     * @param game the game this amoeba belongs to
      * @param numberOfVertices the number of vertices this amoeba should have
      * @param radius the radius of this amoeba
-     * @param draw the group to draw objects to.
+     * @param draw the group to draw objects to, null for an amoeba that's only simulated and never drawn
      * @param center a point in 3d space representing the center of the amoeba
+     * @param startingType 0 for player, 1 for food, or 2 for enemy
+     * @param random the random numbers used to pick the connections across the amoeba
      */
-    public Amoeba(int numberOfVertices, int radius, Group draw, Point3D center) {
+    public Amoeba(Game game, int numberOfVertices, int radius, Group draw, Point3D center, int startingType, Random random) {
+        this.game = game;
         vertices = new Vertex[numberOfVertices];
         this.draw = draw;
         this.radius = radius;
         this.targetCenter = center;
         this.trueCenter = center;
+        this.previousTrueCenter = center;
+        this.lastPathFrom = center;
+        this.lastPathTo = center;
         initialSpeed = speed;
         initialRadius = radius;
+        initialNumberOfVertices = numberOfVertices;
 
         //create a sphere that represents the center of the amoeba
-        sphere = new Sphere(3, 20);
-        PhongMaterial material = new PhongMaterial();
-        material.setDiffuseColor(Color.rgb(90, 90, 240));
-        sphere.setMaterial(material);
-        sphere.setDrawMode(DrawMode.LINE); // Show only the outline of the box
-        sphere.setTranslateX(targetCenter.getX());
-        sphere.setTranslateY(targetCenter.getY());
-        sphere.setTranslateZ(targetCenter.getZ());
-        draw.getChildren().add(sphere);
-
-        //Use the Fibonacci sphere algorithm to distribute the points evenly in a sphere. Really cool :)
-        double goldenRatio = (1 + Math.sqrt(5)) / 2;
-        double latitudeIncrement = Math.PI / numberOfVertices;
-        double longitudeIncrement = 2 * Math.PI / goldenRatio;
+        if (draw != null) {
+            sphere = new Sphere(3, 20);
+            PhongMaterial material = GameMetrics.newMaterial();
+            material.setDiffuseColor(Color.rgb(90, 90, 240));
+            sphere.setMaterial(material);
+            sphere.setDrawMode(DrawMode.LINE); // Show only the outline of the box
+            sphere.setTranslateX(targetCenter.getX());
+            sphere.setTranslateY(targetCenter.getY());
+            sphere.setTranslateZ(targetCenter.getZ());
+            draw.getChildren().add(sphere);
+        } else {
+            sphere = null;
+        }
 
+        //the Fibonacci sphere layout and the closest connections are the same for every amoeba with this many vertices, so they come from a shared template
+        AmoebaTemplate template = AmoebaTemplate.forVertexCount(numberOfVertices);
         for (int i = 0; i < numberOfVertices; i++) {
-            double theta = i * latitudeIncrement;
-            double phi = i * longitudeIncrement;
-            double x = radius * Math.sin(theta) * Math.cos(phi) + targetCenter.getX();
-            double y = radius * Math.sin(theta) * Math.sin(phi) + targetCenter.getY();
-            double z = radius * Math.cos(theta) + targetCenter.getZ();
-            vertices[i] = new Vertex(i, new Point3D(x, y, z), draw, this, gravity, type);
+            vertices[i] = new Vertex(i, template.getUnitPosition(i).multiply(radius).add(targetCenter), draw, this, gravity);
         }
         for (Vertex currentVertex : vertices) {
-            currentVertex.connectToAdjacentVertices();//for every vertex, connect it to nearby vertices
+            currentVertex.connectUsingTemplate(template, radius, random);//for every vertex, connect it to nearby vertices
         }
-        if (AmoebaWars.amoebas[0] != null) {
-            if (radius < AmoebaWars.amoebas[0].getRadius()) { //if its radius is less than the player
-                if (type != 1) { //but it's not food
-                    changeAmoebaType(1);//turn it into food
-                }
-            } else { //if its radius is more than the player
-                if (type != 1) { //but it's not an enemy
-                    changeAmoebaType(2);//turn it into an enemy
-                }
+        constraintGraph = ConstraintGraph.fromVertices(vertices);
+        double edgeLengthSum = 0;
+        for (Vertex currentVertex : vertices) {
+            if (draw != null) {
+                currentVertex.attachToScene(pushedColour);
             }
-        } else {
-            changeAmoebaType(0);
+            for (int i = 0; i < AmoebaTemplate.numberOfClosestConnections; i++) {
+                edgeLengthSum += currentVertex.getRestLength(i);
+            }
+        }
+        targetEdgeLength = edgeLengthSum / (numberOfVertices * AmoebaTemplate.numberOfClosestConnections);
+        pushedVertices = vertices;
+        type = startingType;
+        colour = startingType;
+        updateSpeedForSize();//comparing with the player's speed isn't safe on other threads, so food gets that when it joins the game
+    }
+    /**
+     * works out what a new amoeba should be by comparing it with the player, the first amoeba made in a game is the player
+     * @param game the game the amoeba belongs to
+     * @param radius the radius of the new amoeba
+     * @return 0 for player, 1 for food, or 2 for enemy
+     */
+    private static int startingType(Game game, int radius) {
+        if (game.getAmoebas()[0] == null) {
+            return 0;
         }
+        return radius < game.getPlayer().getRadius() ? 1 : 2; //food if its radius is less than the player, otherwise an enemy
     }
     /**
      * returns an array of vertices for this amoeba
@@ -117,6 +207,53 @@ public class Amoeba {
     public Vertex[] getVertices() {
         return vertices;
     }
+    /**
+     * returns the graph of connections between the vertices
+     */
+    public ConstraintGraph getConstraintGraph() {
+        if (constraintGraph == null) {//the constructor builds it, so this is only a fallback
+            constraintGraph = ConstraintGraph.fromVertices(vertices);
+        }
+        return constraintGraph;
+    }
+    /**
+     * swaps in a new array of vertices after the remesher adds or removes some, renumbers them to match their new positions, and patches the graph of
+     * connections around the vertices that changed
+     * @param newVertices the new vertices
+     * @param newIDs the new ID of every old vertex, -1 if it was removed
+     * @param changed for every new vertex ID, whether its connections may have changed
+     */
+    public void replaceVertices(Vertex[] newVertices, int[] newIDs, boolean[] changed) {
+        for (int i = 0; i < newVertices.length; i++) {
+            newVertices[i].setVertexID(i);
+        }
+        vertices = newVertices;
+        constraintGraph = constraintGraph == null ? null : constraintGraph.rewire(newVertices, newIDs, changed);
+    }
+    /**
+     * returns the average length the remesher tries to keep the connections to the closest vertices at
+     */
+    public double getTargetEdgeLength() {
+        return targetEdgeLength;
+    }
+    /**
+     * returns the ID of this amoeba, unique across every game
+     */
+    public int getId() {
+        return id;
+    }
+    /**
+     * returns the game this amoeba belongs to
+     */
+    public Game getGame() {
+        return game;
+    }
+    /**
+     * returns the group the amoeba is drawn to, null if it isn't drawn
+     */
+    public Group getDraw() {
+        return draw;
+    }
     /**
      * returns the 'target center' of the amoeba. This is the point that all vertices try to center themselves around.
      */
@@ -135,18 +272,78 @@ public class Amoeba {
     public double getRadius() {
         return radius;
     }
+    /**
+     * returns the radius the amoeba was made with, before its hp changed
+     */
+    public int getInitialRadius() {
+        return (int) initialRadius;
+    }
+    /**
+     * returns the number of vertices the amoeba was made with, before the remesher changed it
+     */
+    public int getInitialNumberOfVertices() {
+        return initialNumberOfVertices;
+    }
+    /**
+     * gives an amoeba that hasn't joined a game yet the hp it had before, used when a dormant amoeba is made again. Nothing is recorded, and the remesher
+     * brings the vertices back to the right density once it's in the game
+     * @param hp the hp it had
+     */
+    public void restoreHp(double hp) {
+        this.hp = hp;
+        radius = initialRadius * hp;
+        updateSpeedForSize();
+        resizeAmoeba();
+        remeshPending = true;
+    }
     /**
      * returns the radius of the type of amoeba
      */
     public int getType() {
         return type;
     }
+    /**
+     * returns the strength of gravity acting on this amoeba
+     */
+    public double getGravity() {
+        return gravity;
+    }
+    /**
+     * returns the hp of the amoeba
+     */
+    public double getHp() {
+        return hp;
+    }
+    /**
+     * returns the colour the amoeba should be drawn in
+     */
+    public int getColour() {
+        return colour;
+    }
+    /**
+     * returns whether the amoeba is still alive
+     */
+    public boolean isAlive() {
+        return alive;
+    }
     /**
      * returns the current speed of the amoeba
      */
     public double getSpeed() {
         return speed;
     }
+    /**
+     * returns the velocity of the target center
+     */
+    public Point3D getVelocity() {
+        return velocity;
+    }
+    /**
+     * returns the velocity of the water around the amoeba this tick, what the amoeba and its vertices are dragged towards
+     */
+    public Point3D getCurrent() {
+        return current;
+    }
     /**
      * adds to the velocity of the amoeba, used when vertices apply force to the target center
      * velocityToAdd a Pont3D that represents the x,y, and z components of the velocity to add
@@ -163,10 +360,10 @@ public class Amoeba {
      */
     public void addPlayerMovement(Point3D velocityToAdd) { // for intentional movement by the player. The frame counter causes the force to be turned on and off every 1.5 seconds, causing a swimming like animation
         int tempFrameCounter; // use a temp frame counter for values between 0 and 60
-        if (AmoebaWars.frameCounter>90){
-            tempFrameCounter = AmoebaWars.frameCounter - 90;
+        if (game.getFrameCounter()>90){
+            tempFrameCounter = game.getFrameCounter() - 90;
         } else{
-            tempFrameCounter = AmoebaWars.frameCounter;
+            tempFrameCounter = game.getFrameCounter();
         }
         if (tempFrameCounter < 60) {
             this.velocity = velocity.add(velocityToAdd).multiply(speed * 100);
@@ -179,14 +376,26 @@ public class Amoeba {
      * @param velocityToAdd a Point3D representing the velocity to add
      */
     public void addNonPlayerMovement(Point3D velocityToAdd) { // for intentional movement by a non-player
-        if (AmoebaWars.frameCounter %120 < 60) {
+        if (game.getFrameCounter() %120 < 60) {
             this.velocity = velocity.add(velocityToAdd).multiply(speed * 100);
         }
     }
     /**
-     * updates the speed of the amoeba based on it's size, and clamps speed within a 0.001 to 0.01 range
+     * updates the speed of the amoeba based on it's size, and clamps speed within a 0.001 to 0.01 range. Food is also kept slower than the player, so this
+     * reads the player and should only be called on the thread running the simulation, the game calls it when an amoeba built on another thread joins
      */
-    private void updateSpeed() {
+    public void updateSpeed() {
+        updateSpeedForSize();
+        if (type == 1) { // but if it is food it's max speed is player speed * 0.4
+            if (speed > game.getPlayer().getSpeed() * 0.4) {
+                speed = game.getPlayer().getSpeed() * 0.4;
+            }
+        }
+    }
+    /**
+     * updates the speed of the amoeba based on it's size only, without looking at the player
+     */
+    private void updateSpeedForSize() {
         speed = 0.008 + ((1 - hp) / 200);//as it gets smaller it speeds up
         if (speed < 0.001) {//the slowest it can go is 0.03
             speed = 0.001;
@@ -194,21 +403,21 @@ public class Amoeba {
         if (speed > 0.01) {//the fastest any can go is 0.01
             speed = 0.01;
         }
-        if (type == 1) { // but if it is food it's max speed is player speed * 0.4
-            if (speed > AmoebaWars.amoebas[0].getSpeed() * 0.4) {
-                speed = AmoebaWars.amoebas[0].getSpeed() * 0.4;
-            }
-        }
     }
     /**
      * When the amoeba dies, it's vertices, connections, and center become invisible, and it's center moves out of the place space
      */
     private void die(){
-        for (Vertex vertex: vertices){
-            vertex.changeVertexColour(-1);
-        }
-        sphere.setVisible(false);
+        GameEvents.Death event = new GameEvents.Death();
+        alive = false;//the render sync hides the vertices, connections, and center
         targetCenter = new Point3D(10000,10000,10000);
+        game.getEvents().record(GameEventQueue.DIED, this, 0);
+        if (event.shouldCommit()) {
+            event.amoebaId = id;
+            event.type = type;
+            event.vertices = vertices.length;
+            event.commit();
+        }
     }
     /**
      * averages all the vertex locations to find the center of the amoeba
@@ -226,83 +435,83 @@ public class Amoeba {
     }
     /**
      * the code to modify the HP of the amoeba, HP is analogous to amoeba size and is a value close to 1. When health is changed, the speed of the amoeba is changed
-     * the amoeba is resized
+     * the amoeba is resized. The change is recorded, and the game reclassifies the amoebas and flashes the player once at the end of the tick
      */
     private void changeHP(double amount) {
-        healthIsChanging = true;//notes the health is changing
-        healthIsChangingAnchor = true;//this is used to determine if health was changing, but has stopped changing, to make sure to reset the player colour back to blue
         if (radius > 6) {//if it's not the minimum size
+            GameEvents.HpChange event = new GameEvents.HpChange();
+            event.begin();
+            event.oldHp = hp;
             hp += amount;
             radius = initialRadius * hp; // hp is a value close to 1 which scales up and down hp, which scales up and down the size of the Amoeba
             updateSpeed();
             //System.out.println("new health " + hp + " new radius " + radius + " new speed " + speed);
             resizeAmoeba();
-            if (this == AmoebaWars.amoebas[0]) {// if it's the player amoeba
-                for (Amoeba amoeba : AmoebaWars.amoebas) {//go through every amoeba
-                    if (amoeba != AmoebaWars.amoebas[0]) {// if the current one is not the player, compare size with the player, and if the size doesn't match the type (ie it's smaller but is an enemy) then change the type
-                        if (amoeba.getType() == 2 && amoeba.getRadius() < AmoebaWars.amoebas[0].getRadius()) { //if its radius is less than the player, but it's an enemy
-                            amoeba.changeAmoebaType(1);//turn it into food
-                        } else if (amoeba.getType() == 1 && amoeba.getRadius() > AmoebaWars.amoebas[0].getRadius()) { //if its radius is greater than the player, but it's food
-                            amoeba.changeAmoebaType(2);//turn it into an enemy
-                        }
-                    } else {//if it is the player make their colour flash green or red, indicating it they are taking damage or getting health
-                        if (AmoebaWars.frameCounter % 20 == 0) {//if it's the 20th frame, change to appropriate colour
-                            for (Vertex vertex : amoeba.getVertices()) {
-                                if (amount > 0) {
-                                    vertex.changeVertexColour(1);
-                                } else {
-                                    vertex.changeVertexColour(2);
-                                }
-                            }
-                        } else if (AmoebaWars.frameCounter % 20 == 10) {//if it's the 10th frame, change back to blue
-                            for (Vertex vertex : vertices) {
-                                vertex.changeVertexColour(0);
-                            }
-                        }
-                    }
-                }
+            remeshPending = true;
+            game.getEvents().record(GameEventQueue.HP_CHANGED, this, amount);
+            event.end();
+            if (event.shouldCommit()) {
+                event.amoebaId = id;
+                event.newHp = hp;
+                event.amount = amount;
+                event.commit();
             }
         }else{//if it is less than 6 radius
             die();
         }
     }
     /**
-     * code to changeAmoebaType
+     * makes the player flash green or red, indicating it is getting health or taking damage. Called by the game at the end of every tick the player's health changed
+     * @param amount how much hp the player gained or lost this tick
+     * @param tick the number of the tick
+     */
+    public void showHealthChange(double amount, long tick) {
+        if (tick >= nextFlashTick) {//at most every 20 ticks, change to the appropriate colour
+            if (amount > 0) {
+                colour = 1;
+            } else {
+                colour = 2;
+            }
+            flashEndsTick = tick + 10;
+            nextFlashTick = tick + 20;
+        } else if (tick >= flashEndsTick) {//10 ticks later, change back to blue
+            colour = 0;
+        }
+    }
+    /**
+     * changes the player colour back to blue, called by the game on the first tick its health didn't change
+     */
+    public void stopShowingHealthChange() {
+        colour = 0;
+    }
+    /**
+     * sets the type, colour, and speed without recording a change, used when the amoeba is made
      *
      * @param newType the new amoeba type
      */
-    private void changeAmoebaType(int newType) {//this will change the type of amoeba from food to enemy
+    private void setType(int newType) {
         type = newType;
-        for (Vertex vertex : vertices) {
-            vertex.changeVertexColour(newType);//change the colour of the vertices to match the new type
-        }
+        colour = newType;//change the colour of the vertices to match the new type
         updateSpeed();
-        if (AmoebaWars.frameCounter>0) {//on the first frame the amoebas are null, this ensures win conditions aren't checked until they can be
-            checkIfWinOrLose();
-        }
     }
     /**
-     * Checks if players has won or lost by seeing if all amoebas are red or green, and displays the appropriate message
+     * code to changeAmoebaType, the game checks the win and lose conditions once at the end of the tick
+     *
+     * @param newType the new amoeba type
      */
-    private void checkIfWinOrLose() {
-        //if all amoebas are enemies, you lose. if all amoebas are food, you're the biggest, and you win
-        boolean allEnemy = true;
-        boolean allFood = true;
-        for (Amoeba amoeba : AmoebaWars.amoebas) {
-                if (amoeba.getType() == 1) {
-                    allEnemy = false;
-                }
-                if (amoeba.getType() == 2) {
-                    allFood = false;
-                }
-        }
-        if (allEnemy) {
-            //you lose message
-            AmoebaWars.displayLoseMessage();
-        }
-        if (allFood) {
-            //you win message
-            AmoebaWars.displayWinMessage();
+    public void changeAmoebaType(int newType) {//this will change the type of amoeba from food to enemy
+        GameEvents.TypeChange event = new GameEvents.TypeChange();
+        event.begin();
+        int oldType = type;
+        setType(newType);
+        game.getEvents().record(GameEventQueue.TYPE_CHANGED, this, newType);
+        event.end();
+        if (event.shouldCommit()) {
+            event.amoebaId = id;
+            event.oldType = oldType;
+            event.newType = newType;
+            event.radius = radius;
+            event.commit();
         }
     }
     /**
@@ -313,71 +522,169 @@ public class Amoeba {
             vertex.moveVerticesAwayFromCenter(hp);//take the distance every vertex should be from the center and multiply it by hp
         }
     }
+    /**
+     * pushes the center sphere, the colour, and every vertex from a snapshot to the scene graph, skipping anything that hasn't visibly changed.
+     * If the camera can't see the amoeba its group is hidden and nothing else is pushed, the nodes catch up once it comes back into view, line heights included
+     * since the frame each line would normally update its height on was probably skipped.
+     * This only reads the snapshot, so the simulation can keep changing the amoeba on another thread
+     * @param renderSync decides what has visibly moved
+     * @param snapshot the snapshot to push
+     * @param index the index of this amoeba in the snapshot
+     */
+    public void syncToScene(RenderSync renderSync, WorldSnapshot snapshot, int index) {
+        Vertex[] snapshotVertices = snapshot.getVertices(index);
+        if (snapshotVertices != pushedVertices) {//the remesher has added or removed vertices
+            swapSceneVertices(snapshotVertices);
+            renderSync.recordWrite();
+        }
+        if (!snapshot.isAlive(index)) {
+            if (pushedAlive) {//hide everything once, it stays hidden
+                for (Vertex vertex : pushedVertices) {
+                    vertex.changeVertexColour(-1);
+                }
+                sphere.setVisible(false);
+                pushedAlive = false;
+                renderSync.recordWrite();
+            }
+            return;
+        }
+        boolean inView = renderSync.isInView(snapshot.getTrueCenter(index), snapshot.getBoundingRadius(index));
+        boolean refreshHeights = inView && !pushedInView;
+        if (inView != pushedInView) {
+            draw.setVisible(inView);
+            pushedInView = inView;
+            renderSync.recordWrite();
+        }
+        if (!inView) {
+            return;
+        }
+        if (snapshot.getColour(index) != pushedColour) {
+            pushedColour = snapshot.getColour(index);
+            for (Vertex vertex : pushedVertices) {
+                vertex.changeVertexColour(pushedColour);
+            }
+            renderSync.recordWrite();
+        }
+        Point3D center = snapshot.getTrueCenter(index);
+        renderSync.recordCheck();
+        if (renderSync.isDirty(pushedCenter, center)) {
+            renderSync.moveNode(sphere, center);
+            pushedCenter = center;
+        }
+        Point3D[] vertexLocations = snapshot.getVertexLocations(index);
+        int[] lineTargets = snapshot.getLineTargets(index);
+        for (int i = 0; i < pushedVertices.length; i++) {
+            pushedVertices[i].syncToScene(renderSync, vertexLocations, lineTargets, i, refreshHeights);
+        }
+    }
+    /**
+     * takes the vertices the remesher removed out of the scene and puts the ones it added in, in the colour the amoeba is currently drawn in
+     * @param snapshotVertices the vertices of the amoeba in the snapshot being pushed
+     */
+    private void swapSceneVertices(Vertex[] snapshotVertices) {
+        for (Vertex vertex : pushedVertices) {
+            if (vertex.isRemoved()) {
+                vertex.detachFromScene();
+            }
+        }
+        for (Vertex vertex : snapshotVertices) {
+            if (!vertex.isAttachedToScene()) {
+                vertex.attachToScene(pushedAlive ? pushedColour : -1);
+            }
+        }
+        pushedVertices = snapshotVertices;
+    }
+    /**
+     * saves the path the true center moved along in the last tick. The simulation calls this on every amoeba before any of them update, so the amoebas
+     * updating in parallel never read a center another thread is halfway through changing, and they get the same answers as when they update one at a time
+     */
+    public void saveLastPath() {
+        lastPathFrom = previousTrueCenter;
+        lastPathTo = trueCenter;
+    }
+
+    /**
+     * finds where this amoeba was compared to another one when they were closest while they both moved in the last tick. Only checking where they stopped
+     * lets small fast amoebas pass through each other without touching when the time scale is high
+     * @param amoeba the other amoeba
+     * @return this center minus the other center at the moment they were closest
+     */
+    private Point3D sweptSeparation(Amoeba amoeba) {
+        return SweptCollision.closestApproach(lastPathFrom, lastPathTo, amoeba.lastPathFrom, amoeba.lastPathTo);
+    }
+
     /**
      * code to update the amoeba position, handles logic for food and enemies, and pushes amoebas away from each other if they intersect
      */
     public void updateAmoebaPosition() {
-        healthIsChanging = false;
+        GameEvents.AmoebaUpdate event = new GameEvents.AmoebaUpdate();
+        event.begin();
         velocity = velocity.add(new Point3D(0, -gravity, 0)); //subtract gravity from velocity
-        velocity = velocity.multiply(dampening); //apply dampening
+        FluidGrid fluid = game.getFluidGrid();
+        current = fluid == null ? Point3D.ZERO : fluid.sample(trueCenter);//the water around it, from where it was at the end of the last tick
+        velocity = current.add(velocity.subtract(current).multiply(dampening)); //apply dampening, which drags it towards moving with the water
+        previousTrueCenter = trueCenter;
         trueCenter = findTrueCenter(); // calculate the average position of all vertices and assign it to the trueCenter variable
-        if (trueCenter.getY() >= 0) { //if amoeba center hits the ground
-            trueCenter = new Point3D(trueCenter.getX(), -1, trueCenter.getZ());//move it 1 unit above ground
-            velocity = new Point3D(velocity.getX(), velocity.getY() * -1, velocity.getZ()); //reverse the y velocity
-        }
-        if (type != 0) {//for all non player amoebas, if two amoebas are within each other's radius, add a pushing force equal to three times the normal amoeba speed.
-            for (Amoeba amoeba : AmoebaWars.amoebas) {
-                if (amoeba != this && amoeba != AmoebaWars.amoebas[0]) {
-                    double distance = trueCenter.distance(amoeba.getTrueCenter());
-                    if (distance < radius + amoeba.getRadius()) {
-                        velocity = velocity.subtract(amoeba.getTrueCenter().subtract(trueCenter).multiply(speed * 1.5 ));//if two amoebas are touching, push them apart
+        if (SweptCollision.isInFloor(trueCenter)) { //if amoeba center hits the ground, bounce it off where its path hit
+            trueCenter = SweptCollision.bounceOffFloor(previousTrueCenter, trueCenter);
+            velocity = new Point3D(velocity.getX(), -Math.abs(velocity.getY()), velocity.getZ()); //reverse the y velocity
+        }
+        if (type != 0) {//for all non player amoebas, if two amoebas are within each other's radius, push them apart harder the more they overlap
+            for (Amoeba amoeba : game.getAmoebas()) {
+                if (amoeba != this && amoeba != game.getPlayer()) {
+                    Point3D separation = sweptSeparation(amoeba);
+                    double distance = separation.magnitude();
+                    double overlap = radius + amoeba.getRadius() - distance;
+                    if (overlap > 0) {//push along the direction between them when they were closest, so two that swapped sides aren't pushed further through each other
+                        Point3D away = distance > 0 ? separation.multiply(1 / distance) : new Point3D(0, -1, 0);//exactly on top of each other, push it up
+                        velocity = velocity.add(away.multiply(overlap * speed * 1.5));
                     }
                 }
             }
         } else { //if it's the player, check if the player is intersecting with another amoeba, if so add or subtract to the health of both amoebas
-            for (Amoeba amoeba : AmoebaWars.amoebas) {
+            for (Amoeba amoeba : game.getAmoebas()) {
                 if (amoeba != this) {
-                    double distance = trueCenter.distance(amoeba.getTrueCenter());
+                    double distance = sweptSeparation(amoeba).magnitude();
                     if (distance < radius + (amoeba.getRadius()/2)) {
                         int typeOfAmoebaTouchingPlayer = amoeba.getType();
                         if (typeOfAmoebaTouchingPlayer == 1) { //if it's food
-                            changeHP(0.0025*(2-AmoebaWars.difficulty));//the player gets big faster than the non-players
-                            amoeba.changeHP(-0.0025*(2-AmoebaWars.difficulty));
+                            changeHP(0.0025*(2-game.getDifficulty()));//the player gets big faster than the non-players
+                            amoeba.changeHP(-0.0025*(2-game.getDifficulty()));
                         } else {
-                            changeHP(-0.00025*AmoebaWars.difficulty);
+                            changeHP(-0.00025*game.getDifficulty());
                             amoeba.changeHP(0.0025);
                         }
                     }
                 }
             }
         }
-        if (!healthIsChanging && healthIsChangingAnchor && this == AmoebaWars.amoebas[0]) {//if this is the player, the health isn't changing, but it was last frame, reset the anchor and change the player colour back to blue
-            healthIsChangingAnchor = false;
-            for (Vertex vertex : vertices) {
-                vertex.changeVertexColour(0);
-            }
-        }
         if (type == 1) { // if it's food try to keep a safe distance away from the player, but don't go too close to the floor
-            Point3D targetPosition = AmoebaWars.amoebas[0].getTargetCenter();
+            Point3D targetPosition = game.getPlayer().getTargetCenter();
             double distance = trueCenter.distance(targetPosition);
             if (distance < 200) {
-                addNonPlayerMovement(targetPosition.subtract(targetCenter).normalize().multiply(speed * -250 * AmoebaWars.difficulty));
+                addNonPlayerMovement(targetPosition.subtract(targetCenter).normalize().multiply(speed * -250 * game.getDifficulty()));
             } else {
-                addNonPlayerMovement(targetPosition.subtract(targetCenter).normalize().multiply(speed * 200 * AmoebaWars.difficulty));
+                addNonPlayerMovement(targetPosition.subtract(targetCenter).normalize().multiply(speed * 200 * game.getDifficulty()));
             }
             if (trueCenter.getY() < -200) {
                 velocity.add(new Point3D(0, 5, 0));
             }
         }
         if (type == 2) { // if it's an enemy move towards the player
-            addNonPlayerMovement(AmoebaWars.amoebas[0].getTrueCenter().subtract(trueCenter).normalize().multiply(speed * 60 * AmoebaWars.difficulty));//this takes the normalized directional vector and multiply it by speed
+            addNonPlayerMovement(game.getPlayer().getTrueCenter().subtract(trueCenter).normalize().multiply(speed * 60 * game.getDifficulty()));//this takes the normalized directional vector and multiply it by speed
         }
-        targetCenter = targetCenter.add(velocity.multiply(AmoebaWars.timeScale)); //add current velocity to the target center point
-        sphere.setTranslateX(trueCenter.getX());
-        sphere.setTranslateY(trueCenter.getY());
-        sphere.setTranslateZ(trueCenter.getZ());
-        for (Vertex vertex : vertices) {
-            vertex.applyForces(); // for each vertex apply all necessary forces, such as spring forces to the connected vertices and gravity
+        targetCenter = targetCenter.add(velocity.multiply(game.getTimeScale())); //add current velocity to the target center point
+        if (remeshPending && alive && game.getFrameCounter() % 10 == 0) {//every 10 frames while the size is changing, split connections that have grown too long and merge ones that have shrunk too short
+            remeshPending = game.getRemesher().remesh(this);//keep going until a pass finds nothing to do
+        }
+        game.getPhysicsSolver().step(this, game.getTimeScale(), 1); // move every vertex, either with spring forces to the connected vertices and gravity, or with distance constraints
+        event.end();
+        if (event.shouldCommit()) {
+            event.amoebaId = id;
+            event.type = type;
+            event.vertices = vertices.length;
+            event.hp = hp;
+            event.commit();
         }
     }
 
@@ -0,0 +1,146 @@
+import javafx.geometry.Point3D;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The layout shared by every amoeba with the same number of vertices. The Fibonacci sphere and the three closest connections of each vertex only depend on
+ * the number of vertices, everything else is a matter of scaling by the radius and moving to the center. So they're worked out once on a unit sphere and
+ * cached, and each new amoeba just stamps them out, which takes time proportional to the number of vertices rather than its square
+ */
+public class AmoebaTemplate {
+    /** the templates made so far, by number of vertices. Amoebas can be built on several threads at once, so it's a concurrent map **/
+    private static final Map<Integer, AmoebaTemplate> templates = new ConcurrentHashMap<>();
+
+    /** the number of closest vertices each vertex connects to **/
+    public static final int numberOfClosestConnections = 3;
+
+    /** the position of every vertex on a sphere of radius 1 around the origin **/
+    private final Point3D[] unitPositions;
+
+    /** the indices of the closest vertices each vertex connects to **/
+    private final int[][] closest;
+
+    /** the distances to the closest vertices on the unit sphere **/
+    private final double[][] closestDistances;
+
+    /** the vertex that ends up in the last connection slot of each vertex by connecting to it, or -1 if that slot keeps its random connection **/
+    private final int[] backLinks;
+
+    /**
+     * returns the template for a number of vertices, making it the first time
+     * @param numberOfVertices the number of vertices
+     */
+    public static AmoebaTemplate forVertexCount(int numberOfVertices) {
+        return templates.computeIfAbsent(numberOfVertices, AmoebaTemplate::new);
+    }
+
+    /**
+     * Constructor for a template, lays the vertices out on a unit sphere and finds their closest connections
+     * @param numberOfVertices the number of vertices
+     */
+    private AmoebaTemplate(int numberOfVertices) {
+        unitPositions = new Point3D[numberOfVertices];
+        closest = new int[numberOfVertices][numberOfClosestConnections];
+        closestDistances = new double[numberOfVertices][numberOfClosestConnections];
+        backLinks = new int[numberOfVertices];
+
+        //Use the Fibonacci sphere algorithm to distribute the points evenly in a sphere. Really cool :)
+        double goldenRatio = (1 + Math.sqrt(5)) / 2;
+        double latitudeIncrement = Math.PI / numberOfVertices;
+        double longitudeIncrement = 2 * Math.PI / goldenRatio;
+        for (int i = 0; i < numberOfVertices; i++) {
+            double theta = i * latitudeIncrement;
+            double phi = i * longitudeIncrement;
+            unitPositions[i] = new Point3D(Math.sin(theta) * Math.cos(phi), Math.sin(theta) * Math.sin(phi), Math.cos(theta));
+        }
+
+        //this goes through the vertices in the same order they used to connect themselves, so the result is the same. When a vertex connects to another one it
+        //takes over the other one's last slot, unless the other one hasn't connected yet, in which case its random connection replaces it later
+        int[] lastSlot = new int[numberOfVertices];
+        Arrays.fill(lastSlot, -1);
+        for (int vertex = 0; vertex < numberOfVertices; vertex++) {
+            for (int i = 0; i < numberOfClosestConnections; i++) {//search for the closest point 3 times
+                double minDistance = 1;//only look within the radius
+                int closestIndex = -1;
+                for (int other = 0; other < numberOfVertices; other++) {
+                    if (other != vertex && !isConnected(vertex, i, other, lastSlot[vertex])) {//if it's not this vertex or one it's already connected to
+                        double distance = unitPositions[vertex].distance(unitPositions[other]);
+                        if (distance < minDistance) {//if it's less than the min distance assign it as the new closest point
+                            minDistance = distance;
+                            closestIndex = other;
+                        }
+                    }
+                }
+                if (closestIndex == -1) {
+                    throw new IllegalArgumentException("Vertex " + vertex + " has no other vertex within the radius, " + numberOfVertices + " vertices is too few");
+                }
+                closest[vertex][i] = closestIndex;
+                closestDistances[vertex][i] = minDistance;
+                lastSlot[closestIndex] = vertex;//the vertex it connects to connects back in its last slot
+            }
+            lastSlot[vertex] = -1;//its own random connection goes in the last slot after that
+        }
+        for (int vertex = 0; vertex < numberOfVertices; vertex++) {
+            backLinks[vertex] = lastSlot[vertex];
+        }
+    }
+
+    /**
+     * checks whether a vertex is already connected to another one while its closest connections are being found
+     * @param vertex the vertex looking for connections
+     * @param found how many closest connections it has found so far
+     * @param other the vertex being checked
+     * @param lastSlot the vertex in its last slot, or -1
+     */
+    private boolean isConnected(int vertex, int found, int other, int lastSlot) {
+        for (int i = 0; i < found; i++) {
+            if (closest[vertex][i] == other) {
+                return true;
+            }
+        }
+        return other == lastSlot;
+    }
+
+    /**
+     * returns the number of vertices
+     */
+    public int getNumberOfVertices() {
+        return unitPositions.length;
+    }
+
+    /**
+     * returns the position of a vertex on a sphere of radius 1 around the origin
+     * @param vertex the index of the vertex
+     */
+    public Point3D getUnitPosition(int vertex) {
+        return unitPositions[vertex];
+    }
+
+    /**
+     * returns the index of one of the closest vertices a vertex connects to
+     * @param vertex the index of the vertex
+     * @param i which of the closest connections, 0 to 2
+     */
+    public int getClosest(int vertex, int i) {
+        return closest[vertex][i];
+    }
+
+    /**
+     * returns the distance to one of the closest vertices on the unit sphere
+     * @param vertex the index of the vertex
+     * @param i which of the closest connections, 0 to 2
+     */
+    public double getClosestDistance(int vertex, int i) {
+        return closestDistances[vertex][i];
+    }
+
+    /**
+     * returns the vertex that ends up in the last connection slot of a vertex by connecting to it, or -1 if that slot keeps its random connection
+     * @param vertex the index of the vertex
+     */
+    public int getBackLink(int vertex) {
+        return backLinks[vertex];
+    }
+}
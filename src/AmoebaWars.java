@@ -1,5 +1,6 @@
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Point3D;
 import javafx.scene.*;
 import javafx.scene.control.Button;
@@ -17,6 +18,14 @@ import javafx.scene.transform.Rotate;
 import javafx.scene.transform.Translate;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
 public class AmoebaWars extends Application {
 
     /**how fast the camera rotates around the point**/
@@ -27,18 +36,20 @@ public class AmoebaWars extends Application {
     private final double maxCameraDistance = 1000;
     /**minimum camera distance**/
     private final double minCameraDistance = 30;
-    /**Is the player moving forwards, controlled by keyboard**/
-    private boolean movingForward = false;
-    /**Is the player moving backward, controlled by keyboard**/
-    private boolean movingBackward = false;
-    /**Is the player moving left, controlled by keyboard**/
-    private boolean movingLeft = false;
-    /**Is the player moving right, controlled by keyboard**/
-    private boolean movingRight = false;
-    /**Is the player moving up**/
-    private boolean movingUp = false;
-    /**Is the player moving down**/
-    private boolean movingDown = false;
+    /**which movement keys are held down and where the camera is facing, handed to whichever thread runs the simulation**/
+    private final PlayerInput playerInput = new PlayerInput();
+    /**runs the ticks of the game**/
+    private final Simulation simulation = new Simulation(game);
+    /**the live counters for this window's game, published over JMX**/
+    private final GameMetrics metrics = new GameMetrics();
+    /**runs the simulation on its own thread when threaded mode is on, toggled with T**/
+    private final SimulationThread simulationThread = new SimulationThread(simulation, playerInput);
+    /**the tick of the last snapshot pushed to the scene, so the same snapshot isn't pushed twice**/
+    private long lastSyncedTick = -1;
+    /**the number of frames since the nodes in the scene were last counted for the metrics**/
+    private int framesSinceNodeCount = 0;
+    /**the last snapshot the JavaFX thread used, null before the first tick**/
+    private WorldSnapshot lastSnapshot;
     /**current mouse x position**/
     private double mouseX = 0;
     /**current mouse y position**/
@@ -57,10 +68,6 @@ public class AmoebaWars extends Application {
     private double mouseXMovement = 0;
     /**mouse movement in y direction**/
     private double mouseYMovement = 0;
-    /**this is a counter that counts up to 60 and resets **/
-    public static int frameCounter;
-    /**array of the amoebas in the game**/
-    public static Amoeba[] amoebas;
     /**The UI that displays the controls, JavaFX 3D doesn't have a way to directly overlay 2D UI, so we draw a box in front of the camera and texture the box with UI images**/
     private Box UIControls;
     /**The UI that displays the instructions**/
@@ -68,8 +75,28 @@ public class AmoebaWars extends Application {
     /**Starting, winning, and losing message, static because the amoebas need to accesses it in win/lose conditions
      **/
     public static Box UIContext;
-    /**a scalar for all velocities. It's applied before adding velocity to position. Used to speed up or slow down time, values above 3 cause issues with the physics calculations**/
-    public static double timeScale = 0;
+    /**the normal time scale while the game is running**/
+    private final double normalTimeScale = 1.5;
+    /**the time scale used when fast-forwarding, only allowed with the position based solver**/
+    private final double fastForwardTimeScale = 7.5;
+    /**the original spring based solver**/
+    private static final SpringSolver springSolver = new SpringSolver();
+    /**the position based solver, stays stable with large time scales and all six connections**/
+    private static final PositionBasedSolver positionBasedSolver = new PositionBasedSolver(4);
+    /**splits each step into substeps when the vertices are moving too fast for the solver it wraps**/
+    public static final AdaptiveSolver adaptiveSolver = new AdaptiveSolver(springSolver);
+    /**pushes the simulation to the scene graph once per tick, only moving nodes that have moved more than half a pixel**/
+    public static final RenderSync renderSync = new RenderSync(0.5);
+    /**hides amoebas the camera can't see, or that would be less than two pixels across**/
+    private final FrustumCuller frustumCuller = new FrustumCuller(1);
+    /**the game being played in the window, it holds the amoebas, the frame counter, the difficulty and the solver. P switches the solver between spring and position based,
+     * O turns adaptive substepping on and off. The time scale starts at 0 so nothing moves until the player starts, values above 3 cause issues with the spring solver,
+     * but the position based solver is stable up to around 10**/
+    private static final Game game = new Game(adaptiveSolver, 0);
+    /**the water the amoebas swim in, 16 cells along each side, G turns it on and off**/
+    private static final FluidGrid fluidGrid = FluidGrid.standard(16);
+    /**the message the simulation wants displayed, the JavaFX thread picks it up and shows it, null if there's nothing new**/
+    private static final AtomicReference<PhongMaterial> pendingMessage = new AtomicReference<>();
     /**the point that the camera faces, follow the player amoeba**/
     Point3D cameraTarget;
     /**the velocity of the camera target**/
@@ -80,19 +107,32 @@ public class AmoebaWars extends Application {
     public static PhongMaterial UIWinTexture;
     /**the material that will hold the texture for the lose message **/
     public static PhongMaterial UILoseTexture;
-    /** a value that modifies the speed of enemies/food **/
-    public static double difficulty;//a value that modifies the speed of enemies/food
+    /** the threads that build the world while the title screen is showing **/
+    private final ExecutorService worldBuilder = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() - 1), runnable -> {
+        Thread thread = new Thread(runnable, "world-builder");
+        thread.setDaemon(true);//don't keep the game open after the window closes
+        return thread;
+    });
+    /** loads the floor, background spheres, and extra amoebas in 500 unit chunks around the camera target, one chunk in every direction, and drops them behind **/
+    private final ChunkStreamer chunkStreamer = new ChunkStreamer(game, worldBuilder, 500, 1, 500, 2, 1);
     /**
-     * The method which sets up the scene and initializes important variable
+     * The method which sets up the scene and initializes important variable. The title screen is shown straight away, the textures load in the background,
+     * and the world is built on worker threads while the player picks a difficulty
      * @param primaryStage the stage for this scene
      */
     @Override
     public void start(Stage primaryStage) {
+        //title scene, five textures, grid, player, other amoebas, and attaching the world. The floor and background spheres come from the chunks
+        StartupReport startupReport = new StartupReport(10);
+        metrics.start();//publish the live counters over JMX, watch them in JConsole under amoebawars
+        simulation.setMetrics(metrics);
+        long phaseStart = System.nanoTime();
         // instantiate the root group
         Group root = new Group();
         // instantiate the scene
         Label label1= new Label("Please select the difficulty");
-        Button button= new Button("Begin!");
+        Button button= new Button("Loading...");
+        button.setDisable(true);//can't begin until the world is built
         Scene scene = new Scene(root, 1300, 1000, true);
         Slider slider = new Slider(0.2, 2, 1);
         slider.setShowTickMarks(true);
@@ -102,7 +142,7 @@ public class AmoebaWars extends Application {
         button.setOnAction(e -> {
             if (e.getSource() == button) {
                 primaryStage.setScene(scene);
-                difficulty= slider.getValue();
+                game.setDifficulty(slider.getValue());
             }
         });
         VBox layout1 = new VBox(20);
@@ -119,6 +159,8 @@ public class AmoebaWars extends Application {
 
         primaryStage.setTitle("Amoeba Wars");
         primaryStage.setScene(titleScreenScene);
+        primaryStage.show();
+        startupReport.record("title scene", phaseStart);
 
 
         PerspectiveCamera camera = new PerspectiveCamera(true);//instantiate a new camera
@@ -139,64 +181,60 @@ public class AmoebaWars extends Application {
         UIContext.setTranslateX(0);
         UIContext.setTranslateY(0);
 
-        //create materials with textures and assign them to the boxes
-        PhongMaterial UIControlsTexture = new PhongMaterial();
-        UIControlsTexture.setDiffuseMap(new Image("controls.png"));
-        PhongMaterial UIInstructionsTexture = new PhongMaterial();
-        UIInstructionsTexture.setDiffuseMap(new Image("instructions.png"));
-        UIIntroTexture = new PhongMaterial();
-        UIIntroTexture.setDiffuseMap(new Image("intro.png"));
-        UIWinTexture = new PhongMaterial();
-        UIWinTexture.setDiffuseMap(new Image("win.png"));
-        UILoseTexture = new PhongMaterial();
-        UILoseTexture.setDiffuseMap(new Image("lose.png"));
+        //create materials with textures and assign them to the boxes, the textures are decoded in the background
+        PhongMaterial UIControlsTexture = GameMetrics.newMaterial();
+        UIControlsTexture.setDiffuseMap(loadTexture("controls.png", startupReport));
+        PhongMaterial UIInstructionsTexture = GameMetrics.newMaterial();
+        UIInstructionsTexture.setDiffuseMap(loadTexture("instructions.png", startupReport));
+        UIIntroTexture = GameMetrics.newMaterial();
+        UIIntroTexture.setDiffuseMap(loadTexture("intro.png", startupReport));
+        UIWinTexture = GameMetrics.newMaterial();
+        UIWinTexture.setDiffuseMap(loadTexture("win.png", startupReport));
+        UILoseTexture = GameMetrics.newMaterial();
+        UILoseTexture.setDiffuseMap(loadTexture("lose.png", startupReport));
         UIControls.setMaterial(UIControlsTexture);
         UIInstructions.setMaterial(UIInstructionsTexture);
         UIContext.setMaterial(UIIntroTexture);
 
         //put the UI and camera together in a group, when the camera moves the movements will be applied to the whole group
         Group cameraAndUI = new Group(camera, UIControls, UIInstructions, UIContext);
+        //the transforms that move the camera, these are changed every frame rather than replaced
+        Translate moveCamera = new Translate();
+        Rotate rx = new Rotate(0, Rotate.X_AXIS);
+        Rotate ry = new Rotate(0, Rotate.Y_AXIS);
+        cameraAndUI.getTransforms().addAll(moveCamera, ry, rx);
         root.getChildren().add(cameraAndUI); // Add the camera/UI group to the root group
 
-        amoebas = new Amoeba[8]; //create an array of Amoebas
-        amoebas[0] = new Amoeba(200, 25, root, new Point3D(0, -100, 0));//player
-        amoebas[1] = new Amoeba(60, 50, root, new Point3D(0, -300, 400));
-        amoebas[2] = new Amoeba(60, 20, root, new Point3D(-400, -400, 400));
-        amoebas[3] = new Amoeba(60, 20, root, new Point3D(200, -100, -200));
-        amoebas[4] = new Amoeba(60, 10, root, new Point3D(-200, -300, 200));
-        amoebas[5] = new Amoeba(60, 40, root, new Point3D(280, -100, -100));
-        amoebas[6] = new Amoeba(60, 26, root, new Point3D(-350, -300, 350));
-        amoebas[7] = new Amoeba(60, 24, root, new Point3D(-200, -300, 120));
-
         // Set up the scene
-        //make the floor
-        Box box = new Box(2000, 1, 2000); // Create a cube
-        root.getChildren().add(box); // Add the cube to the scene graph
-
-        // create a grid
-        int gridSize = 20;
-        int cellSize = 2000;
-        for (int x = 0; x < gridSize; x++) {
-            for (int y = 0; y < gridSize; y++) {
-                for (int z = 0; z < gridSize; z++) {
-                    box = new Box(cellSize, cellSize, cellSize); // Create a cube
-                    box.setDrawMode(DrawMode.LINE); // Show only the outline of the box
-                    box.setTranslateX(x * cellSize - (cellSize * gridSize * 0.5)); // Position the cube in the X direction
-                    box.setTranslateY(y * cellSize - (cellSize * gridSize * 0.5)); // Position the cube in the Y direction
-                    box.setTranslateZ(z * cellSize - (cellSize * gridSize * 0.5)); // Position the cube in the Z direction
-                    root.getChildren().add(box); // Add the cube to the scene graph
-                }
+        // the world is built into groups that aren't attached to anything yet, so it's safe to do on other threads. Each amoeba gets its own group for the same reason
+        game.setAmoebas(new Amoeba[Game.standardLayout.length]); //create an array of Amoebas
+        fluidGrid.setThreads(Runtime.getRuntime().availableProcessors());//the water is solved a layer per thread on the simulation's thread
+        game.setFluidGrid(fluidGrid);
+        game.setGameOverListener(playerWon -> {
+            if (playerWon) {
+                displayWinMessage();
+            } else {
+                displayLoseMessage();
             }
-        }
-
-        //create randomly placed balls to give a sense of space
-        for (int x = 0; x < 2000; x++) {
-            Sphere sphere = new Sphere((int) (0.2 + Math.random() * 5), (int) (1 + Math.random() * 5)); // Create random spheres
-            sphere.setTranslateX(Math.random() * 1000 - 500);
-            sphere.setTranslateY(Math.random() * 1000 - 500);
-            sphere.setTranslateZ(Math.random() * 1000 - 500);
-            root.getChildren().add(sphere); // Add the cube to the scene graph
-        }
+        });
+        Group[] amoebaGroups = new Group[Game.standardLayout.length];
+        CompletableFuture<Group> grid = CompletableFuture.supplyAsync(() -> timePhase("grid", startupReport, this::buildGrid), worldBuilder);
+        //the player has to exist before the others, since they check their size against it to decide if they're food or enemies
+        CompletableFuture<Void> allAmoebas = CompletableFuture.runAsync(() -> {
+            long playerStart = System.nanoTime();
+            buildAmoeba(amoebaGroups, 0);
+            startupReport.record("player amoeba", playerStart);
+        }, worldBuilder).thenCompose(player -> {
+            long othersStart = System.nanoTime();
+            CompletableFuture<?>[] others = new CompletableFuture<?>[Game.standardLayout.length - 1];
+            for (int i = 1; i < Game.standardLayout.length; i++) {
+                int index = i;
+                others[i - 1] = CompletableFuture.runAsync(() -> buildAmoeba(amoebaGroups, index), worldBuilder);
+            }
+            return CompletableFuture.allOf(others).thenRun(() -> startupReport.record("other amoebas", othersStart));
+        });
+        //start building the chunks around the start once the player exists, so the game has someone to compare their amoebas with. They're attached on the first frame
+        allAmoebas.thenRun(() -> Platform.runLater(() -> chunkStreamer.update(cameraTarget, null)));
 
         scene.setOnMouseMoved((MouseEvent event) -> {
             mouseX = event.getSceneX();
@@ -206,37 +244,73 @@ public class AmoebaWars extends Application {
         // Handle keyboard events
         scene.setOnKeyPressed((KeyEvent event) -> {
             if (event.getCode() == KeyCode.W) {
-                movingForward = true;
+                playerInput.press(PlayerInput.FORWARD);
             } else if (event.getCode() == KeyCode.S) {
-                movingBackward = true;
+                playerInput.press(PlayerInput.BACKWARD);
             } else if (event.getCode() == KeyCode.A) {
-                movingLeft = true;
+                playerInput.press(PlayerInput.LEFT);
             } else if (event.getCode() == KeyCode.D) {
-                movingRight = true;
+                playerInput.press(PlayerInput.RIGHT);
             } else if (event.getCode() == KeyCode.SPACE) {
-                if (timeScale == 0) {//if the timescale is at 0 then unpause the game and get rid of the intro message
-                    timeScale = 1.5;
+                if (game.getTimeScale() == 0) {//if the timescale is at 0 then unpause the game and get rid of the intro message
+                    game.setTimeScale(normalTimeScale);
                     UIContext.setVisible(false);
                 }
-                movingUp = true;
+                playerInput.press(PlayerInput.UP);
             } else if (event.getCode() == KeyCode.CONTROL) {
-                movingDown = true;
+                playerInput.press(PlayerInput.DOWN);
+            } else if (event.getCode() == KeyCode.C) {//turn culling on and off
+                frustumCuller.setEnabled(!frustumCuller.isEnabled());
+            } else if (event.getCode() == KeyCode.R) {//turn remeshing on and off
+                game.getRemesher().setEnabled(!game.getRemesher().isEnabled());
+            } else if (event.getCode() == KeyCode.T) {//switch between running the simulation on the JavaFX thread and on its own thread
+                if (simulationThread.isRunning()) {
+                    simulationThread.stop();
+                } else {
+                    simulationThread.start();
+                }
+            } else if (event.getCode() == KeyCode.P) {//switch between the spring and position based solvers
+                if (adaptiveSolver.getSolver() == springSolver) {
+                    adaptiveSolver.setSolver(positionBasedSolver);
+                } else {
+                    adaptiveSolver.setSolver(springSolver);
+                }
+                game.setPhysicsSolver(game.getPhysicsSolver() == adaptiveSolver ? adaptiveSolver : adaptiveSolver.getSolver());
+                if (adaptiveSolver.getSolver() == springSolver && game.getTimeScale() > normalTimeScale) {//the spring solver can't handle fast-forwarding
+                    game.setTimeScale(normalTimeScale);
+                }
+            } else if (event.getCode() == KeyCode.O) {//turn adaptive substepping on and off
+                game.setPhysicsSolver(game.getPhysicsSolver() == adaptiveSolver ? adaptiveSolver.getSolver() : adaptiveSolver);
+            } else if (event.getCode() == KeyCode.F) {//toggle fast-forward, only while the game is running and using the position based solver
+                if (game.getTimeScale() == normalTimeScale && adaptiveSolver.getSolver() == positionBasedSolver) {
+                    game.setTimeScale(fastForwardTimeScale);
+                } else if (game.getTimeScale() == fastForwardTimeScale) {
+                    game.setTimeScale(normalTimeScale);
+                }
+            } else if (event.getCode() == KeyCode.G) {//turn the water currents on and off, still water is cheaper
+                game.setFluidGrid(game.getFluidGrid() == null ? fluidGrid : null);
+            } else if (event.getCode() == KeyCode.L) {//start or stop streaming every tick to telemetry.amwt for offline analysis
+                toggleTelemetry();
+            } else if (event.getCode() == KeyCode.EQUALS) {//more solver iterations make the amoeba stiffer
+                positionBasedSolver.setIterations(positionBasedSolver.getIterations() + 1);
+            } else if (event.getCode() == KeyCode.MINUS) {
+                positionBasedSolver.setIterations(positionBasedSolver.getIterations() - 1);
             }
         });
 
         scene.setOnKeyReleased((KeyEvent event) -> {
             if (event.getCode() == KeyCode.W) {
-                movingForward = false;
+                playerInput.release(PlayerInput.FORWARD);
             } else if (event.getCode() == KeyCode.S) {
-                movingBackward = false;
+                playerInput.release(PlayerInput.BACKWARD);
             } else if (event.getCode() == KeyCode.A) {
-                movingLeft = false;
+                playerInput.release(PlayerInput.LEFT);
             } else if (event.getCode() == KeyCode.D) {
-                movingRight = false;
+                playerInput.release(PlayerInput.RIGHT);
             } else if (event.getCode() == KeyCode.SPACE) {
-                movingUp = false;
+                playerInput.release(PlayerInput.UP);
             } else if (event.getCode() == KeyCode.CONTROL) {
-                movingDown = false;
+                playerInput.release(PlayerInput.DOWN);
             }
         });
 
@@ -258,15 +332,18 @@ public class AmoebaWars extends Application {
              */
             @Override
             public void handle(long now) {
-                frameCounter++;//increment the frame counter and reset it when it's above 600
-                if (frameCounter > 180) {
-                    frameCounter = 0;
+                metrics.recordFrame(now);
+                //when the simulation runs on its own thread, draw the newest snapshot it has made, otherwise run a tick here first
+                WorldSnapshot snapshot = simulationThread.getLatestSnapshot();
+                if (!simulationThread.isRunning() || snapshot == null) {
+                    snapshot = lastSnapshot;
                 }
                 //camera controls
                 //the camera target  follows the center of the player amoeba and applies dampening to make the camera motion more smooth
-                cameraTargetVelocity = cameraTarget.subtract(amoebas[0].getTargetCenter()).multiply(0.1);
+                Point3D playerCenter = snapshot != null ? snapshot.getTargetCenter(0) : game.getPlayer().getTargetCenter();
+                cameraTargetVelocity = cameraTarget.subtract(playerCenter).multiply(0.1);
                 cameraTargetVelocity = cameraTargetVelocity.multiply(0.9);
-                cameraTarget = cameraTarget.subtract(cameraTargetVelocity.multiply(timeScale));
+                cameraTarget = cameraTarget.subtract(cameraTargetVelocity.multiply(game.getTimeScale()));
 
                 //difference in mouse position is calculated
                 double deltaMouseX = mouseX - previousMouseX;//get the difference between where the mouse is and where it was
@@ -286,8 +363,10 @@ public class AmoebaWars extends Application {
                     cameraY = -5;
                 }
 
-                //create a translation that will move the camera to the new position
-                Translate moveCamera = new Translate(cameraX, cameraY, cameraZ);
+                //move the camera to the new position
+                moveCamera.setX(cameraX);
+                moveCamera.setY(cameraY);
+                moveCamera.setZ(cameraZ);
 
                 // calculate the angle from the camera to the player amoeba, first get the camera and amoeba position and assign them to temporary variables(to make it shorter and more readable), then calculate their difference
                 Point3D from = new Point3D(cameraX, cameraY, cameraZ);
@@ -299,63 +378,174 @@ public class AmoebaWars extends Application {
                 double xRotation = Math.toDegrees(Math.asin(-difference.getY()));
                 double yRotation = Math.toDegrees(Math.atan2(difference.getX(), difference.getZ()));
 
-                //create two new rotates with those values, use the difference position as the pivot point, and the x-axis and y-axis respectively as the rotational axis for the two rotations
-                Rotate rx = new Rotate(xRotation, difference.getX(), difference.getY(), difference.getZ(), Rotate.X_AXIS);
-                Rotate ry = new Rotate(yRotation, difference.getX(), difference.getY(), difference.getZ(), Rotate.Y_AXIS);
-
-                //clear all previous position/rotation transformations and apply new ones
-                cameraAndUI.getTransforms().clear();
-                cameraAndUI.getTransforms().addAll(moveCamera, ry, rx);
+                //update the two rotates with those values, use the difference position as the pivot point, and the x-axis and y-axis respectively as the rotational axis for the two rotations
+                setRotation(rx, xRotation, difference);
+                setRotation(ry, yRotation, difference);
 
-                if (movingForward) {
-                    amoebas[0].addPlayerMovement(difference.multiply(2)); //add the difference between the camera position and amoeba position
-                }
-                if (movingBackward) {
-                    amoebas[0].addPlayerMovement(difference.multiply(-2)); //subtract the difference between the camera position and amoeba position
-                }
-                if (movingLeft) {
-                    amoebas[0].addPlayerMovement(difference.crossProduct(Rotate.Y_AXIS).normalize().multiply(2));// add the cross product of the difference and Y axis to velocity. Cross product returns the vector perpendicular to two others
+                //player movement is relative to the direction the camera faces
+                playerInput.setCameraDirection(difference);
+                if (simulationThread.isIdle()) {//once the simulation thread has finished its last tick
+                    snapshot = simulation.tick(playerInput);
                 }
-                if (movingRight) {
-                    amoebas[0].addPlayerMovement(difference.crossProduct(Rotate.Y_AXIS).normalize().multiply(-2));// subtract the cross product of the difference and Y axis to velocity
-                }
-                if (movingUp) {
-                    amoebas[0].addPlayerMovement(new Point3D(0, -2.5, 0));// add to the y velocity, a bit higher to counteract gravity
+                lastSnapshot = snapshot;
+
+                //push everything that visibly moved to the scene graph, unless this snapshot has already been pushed
+                if (snapshot != null && snapshot.getTick() != lastSyncedTick) {
+                    frustumCuller.update(from, xRotation, yRotation, camera.getFieldOfView(), scene.getWidth(), scene.getHeight(), camera.getNearClip(), camera.getFarClip());
+                    renderSync.sync(snapshot.getAmoebas(), snapshot, from, camera.getFieldOfView(), scene.getHeight());
+                    lastSyncedTick = snapshot.getTick();
                 }
-                if (movingDown) {
-                    amoebas[0].addPlayerMovement(new Point3D(0, 1.5, 0));// subtract from the y velocity
+                //load the chunks the player is swimming towards and drop the ones behind
+                chunkStreamer.update(cameraTarget, snapshot);
+                if (++framesSinceNodeCount >= 60) {//walking the whole scene isn't free, so only count the nodes about once a second
+                    metrics.countNodes(root);
+                    framesSinceNodeCount = 0;
                 }
-                //one of the most important lines, this accesses the model and updates the amoeba positions then the positions of all vertices
-                for (Amoeba amoeba : amoebas) {
-                    amoeba.updateAmoebaPosition();
+                PhongMaterial message = pendingMessage.getAndSet(null);
+                if (message != null) {
+                    UIContext.setVisible(true);
+                    UIContext.setMaterial(message);
                 }
             }
         };
 
-        // Start the animation timer
-        animationTimer.start();
         scene.setCamera(camera);
+        renderSync.setCuller(frustumCuller);
+
+        //once everything is built, attach it to the scene on the JavaFX thread, start the animation timer, and let the player begin
+        long buildStart = System.nanoTime();
+        CompletableFuture.allOf(grid, allAmoebas).whenComplete((ignored, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                error.printStackTrace();
+                button.setText("Failed to load");
+                return;
+            }
+            root.getChildren().addAll(amoebaGroups);
+            root.getChildren().addAll(grid.join(), chunkStreamer.getRoot());
+            animationTimer.start();
+            button.setText("Begin!");
+            button.setDisable(false);
+            startupReport.record("world attached", buildStart);
+        }));
+    }
 
-        // Show the stage
+    /**
+     * changes the angle and pivot of a rotate that's already in use
+     * @param rotate the rotate to change
+     * @param angle the new angle in degrees
+     * @param pivot the new pivot point
+     */
+    private static void setRotation(Rotate rotate, double angle, Point3D pivot) {
+        rotate.setAngle(angle);
+        rotate.setPivotX(pivot.getX());
+        rotate.setPivotY(pivot.getY());
+        rotate.setPivotZ(pivot.getZ());
+    }
 
-        primaryStage.show();
+    /**
+     * starts loading a texture in the background, and records how long it took when it's done
+     * @param fileName the name of the image file
+     * @param startupReport the report to record the time in
+     * @return the image, which will be blank until it's loaded
+     */
+    private Image loadTexture(String fileName, StartupReport startupReport) {
+        long phaseStart = System.nanoTime();
+        Image image = new Image(fileName, true);
+        image.progressProperty().addListener((observable, oldProgress, newProgress) -> {
+            if (newProgress.doubleValue() >= 1) {
+                startupReport.record(fileName + (image.isError() ? " (failed)" : ""), phaseStart);
+            }
+        });
+        return image;
+    }
+
+    /**
+     * runs one phase of building the world and records how long it took
+     * @param phase the name of the phase
+     * @param startupReport the report to record the time in
+     * @param work the code that builds this part of the world
+     * @return whatever the work returned
+     */
+    private static <T> T timePhase(String phase, StartupReport startupReport, Supplier<T> work) {
+        long phaseStart = System.nanoTime();
+        T result = work.get();
+        startupReport.record(phase, phaseStart);
+        return result;
+    }
+
+    /**
+     * creates an amoeba from the standard layout in its own group
+     * @param amoebaGroups the array to put the amoeba's group in
+     * @param index the index of the amoeba in the amoebas array and the layout
+     */
+    private static void buildAmoeba(Group[] amoebaGroups, int index) {
+        int[] layout = Game.standardLayout[index];
+        amoebaGroups[index] = new Group();
+        game.getAmoebas()[index] = new Amoeba(game, layout[0], layout[1], amoebaGroups[index], new Point3D(layout[2], layout[3], layout[4]));
+    }
+
+    /**
+     * creates the grid of boxes that gives a sense of space far away from the amoebas
+     * @return a group holding the grid
+     */
+    private Group buildGrid() {
+        Group grid = new Group();
+        int gridSize = 20;
+        int cellSize = 2000;
+        for (int x = 0; x < gridSize; x++) {
+            for (int y = 0; y < gridSize; y++) {
+                for (int z = 0; z < gridSize; z++) {
+                    Box box = new Box(cellSize, cellSize, cellSize); // Create a cube
+                    box.setDrawMode(DrawMode.LINE); // Show only the outline of the box
+                    box.setTranslateX(x * cellSize - (cellSize * gridSize * 0.5)); // Position the cube in the X direction
+                    box.setTranslateY(y * cellSize - (cellSize * gridSize * 0.5)); // Position the cube in the Y direction
+                    box.setTranslateZ(z * cellSize - (cellSize * gridSize * 0.5)); // Position the cube in the Z direction
+                    grid.getChildren().add(box); // Add the cube to the grid
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * starts streaming every tick, vertex positions included, to telemetry.amwt in the working directory, or stops it and says how much was written and dropped.
+     * Stopping waits for the rest of the file to be written, so that happens on its own thread rather than freezing the window
+     */
+    private void toggleTelemetry() {
+        TelemetryRecorder telemetry = simulation.getTelemetry();
+        if (telemetry == null) {
+            try {
+                simulation.setTelemetry(new TelemetryRecorder(Path.of("telemetry.amwt"), 1024, true));
+            } catch (IOException e) {
+                System.err.println("Telemetry failed: " + e.getMessage());
+            }
+            return;
+        }
+        simulation.setTelemetry(null);
+        Thread closer = new Thread(() -> {
+            try {
+                telemetry.close();
+                System.out.println("Telemetry: wrote " + telemetry.getWritten() + " ticks, " + telemetry.getBytesWritten() + " bytes, dropped " + telemetry.getDropped());
+            } catch (IOException e) {
+                System.err.println("Telemetry failed: " + e.getMessage());
+            }
+        }, "telemetry-close");//not a daemon, so closing the window still lets the file be finished
+        closer.start();
     }
 
     /**
-     * display the message stating player won
+     * display the message stating player won. This can be called from the simulation thread, so the message is only queued here and the JavaFX thread shows it
      */
-    public static void displayWinMessage() {
-        AmoebaWars.UIContext.setVisible(true);
-        AmoebaWars.timeScale = 0.01;
-        UIContext.setMaterial(UIWinTexture);
+    private static void displayWinMessage() {
+        game.setTimeScale(0.01);
+        pendingMessage.set(UIWinTexture);
     }
     /**
-     * display the message stating player lost
+     * display the message stating player lost. This can be called from the simulation thread, so the message is only queued here and the JavaFX thread shows it
      */
-    public static void displayLoseMessage() {
-        AmoebaWars.UIContext.setVisible(true);
-        AmoebaWars.timeScale = 0.03;
-        UIContext.setMaterial(UILoseTexture);
+    private static void displayLoseMessage() {
+        game.setTimeScale(0.03);
+        pendingMessage.set(UILoseTexture);
     }
     /**
      * main method
@@ -0,0 +1,278 @@
+import javafx.geometry.Point3D;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A command line tool for tuning the difficulty. It plays hundreds of games without a window, each with a scripted player in place of the keyboard, spread over
+ * a pool of worker threads. Every game has its own Game, so they share nothing and the runs scale with the number of cores. Nothing is drawn, so a game is only
+ * its vertices and a few numbers.
+ * It writes one CSV with the wins, losses, and time to victory for every difficulty, and another with the average player hp over time for every difficulty.
+ * <p>
+ * Usage: java BatchRunner [--difficulties 0.2,0.6,1,1.4,2] [--games 100] [--threads 8] [--max-ticks 18000] [--sample-every 60] [--solver spring|pbd]
+ * [--adaptive true|false] [--time-scale 1.5] [--reaction-ticks 10] [--seed 1] [--out batch.csv] [--curves batch-curves.csv]
+ */
+public class BatchRunner {
+    /** the JavaFX logger, kept in a field because loggers that nothing references can be garbage collected along with their level **/
+    private static final Logger javafxLogger = Logger.getLogger("javafx");
+    /** the simulation runs at 60 ticks a second in the window **/
+    private static final double ticksPerSecond = 60;
+    /** the difficulties to try **/
+    private double[] difficulties = {0.2, 0.6, 1, 1.4, 2};
+    /** the number of games played at each difficulty **/
+    private int gamesPerDifficulty = 100;
+    /** the number of games played at the same time **/
+    private int threads = Runtime.getRuntime().availableProcessors();
+    /** a game that hasn't been won or lost after this many ticks is stopped and counted as a timeout **/
+    private int maxTicks = 18000;
+    /** the player hp is recorded every this many ticks **/
+    private int sampleEvery = 60;
+    /** spring or pbd **/
+    private String solver = "spring";
+    /** whether to wrap the solver in adaptive substepping **/
+    private boolean adaptive = true;
+    /** the time scale the games are played at **/
+    private double timeScale = 1.5;
+    /** how many ticks the scripted player waits between decisions **/
+    private int reactionTicks = 10;
+    /** the seed for the starting positions, every game gets its own seed from this **/
+    private long seed = 1;
+    /** the file to write the results to **/
+    private String outputFile = "batch.csv";
+    /** the file to write the hp curves to **/
+    private String curvesFile = "batch-curves.csv";
+
+    /**
+     * what happened in one game
+     * @param difficulty the difficulty it was played at
+     * @param outcome whether it was won, lost, or neither, using the codes in Game
+     * @param ticks the number of ticks it took
+     * @param finalHp the player hp at the end
+     * @param hpCurve the player hp every sampleEvery ticks
+     */
+    private record GameResult(double difficulty, int outcome, int ticks, double finalHp, float[] hpCurve) {
+    }
+
+    /**
+     * main method, parses the arguments and runs the games
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        //nothing is ever rendered, and the warnings about 3D not being supported are just noise
+        System.setProperty("prism.order", "sw");
+        javafxLogger.setLevel(Level.OFF);
+        BatchRunner batchRunner = new BatchRunner();
+        batchRunner.parseArguments(args);
+        batchRunner.run();
+    }
+
+    /**
+     * reads the command line arguments into the settings
+     * @param args the command line arguments
+     */
+    private void parseArguments(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--difficulties" -> difficulties = Arrays.stream(value.split(",")).mapToDouble(difficulty -> Double.parseDouble(difficulty.trim())).toArray();
+                case "--games" -> gamesPerDifficulty = Integer.parseInt(value);
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--max-ticks" -> maxTicks = Integer.parseInt(value);
+                case "--sample-every" -> sampleEvery = Integer.parseInt(value);
+                case "--solver" -> solver = value;
+                case "--adaptive" -> adaptive = Boolean.parseBoolean(value);
+                case "--time-scale" -> timeScale = Double.parseDouble(value);
+                case "--reaction-ticks" -> reactionTicks = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--out" -> outputFile = value;
+                case "--curves" -> curvesFile = value;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    /**
+     * plays every game on the pool, then writes the results
+     */
+    private void run() throws IOException, InterruptedException, ExecutionException {
+        System.out.printf("Playing %d games at each of %d difficulties on %d threads, about %.0f KB per game%n", gamesPerDifficulty, difficulties.length, threads,
+                measureGameBytes() / 1024.0);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "batch-game");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int totalGames = gamesPerDifficulty * difficulties.length;
+        AtomicInteger finished = new AtomicInteger();
+        List<Future<GameResult>> futures = new ArrayList<>(totalGames);
+        long start = System.nanoTime();
+        for (int d = 0; d < difficulties.length; d++) {
+            double difficulty = difficulties[d];
+            for (int g = 0; g < gamesPerDifficulty; g++) {
+                long gameSeed = seed * 1_000_003L + (long) d * gamesPerDifficulty + g;
+                futures.add(pool.submit(() -> {
+                    GameResult result = playGame(difficulty, gameSeed);
+                    int done = finished.incrementAndGet();
+                    if (done % Math.max(1, totalGames / 10) == 0) {
+                        System.out.printf("%d/%d games played%n", done, totalGames);
+                    }
+                    return result;
+                }));
+            }
+        }
+        List<GameResult> results = new ArrayList<>(totalGames);
+        for (Future<GameResult> future : futures) {
+            results.add(future.get());
+        }
+        pool.shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long totalTicks = results.stream().mapToLong(GameResult::ticks).sum();
+        System.out.printf("Played %d games in %.1f seconds, %.1f games/sec, %.0f ticks/sec%n", totalGames, seconds, totalGames / seconds, totalTicks / seconds);
+        writeResults(results);
+        writeCurves(results);
+        System.out.println("Wrote " + outputFile + " and " + curvesFile);
+    }
+
+    /**
+     * builds a game with the standard layout, every amoeba but the player nudged a little so no two games are the same
+     * @param difficulty the difficulty to play at
+     * @param gameSeed the seed for the nudges and the amoebas
+     * @return the game
+     */
+    private Game buildGame(double difficulty, long gameSeed) {
+        PhysicsSolver baseSolver = solver.equals("pbd") ? new PositionBasedSolver(4) : new SpringSolver();
+        Game game = new Game(adaptive ? new AdaptiveSolver(baseSolver) : baseSolver, timeScale);
+        game.setSeed(gameSeed);//the nudges and the connections across every amoeba
+        Random random = game.getRandom();
+        game.setDifficulty(difficulty);
+        game.setAmoebas(new Amoeba[Game.standardLayout.length]);
+        for (int i = 0; i < Game.standardLayout.length; i++) {
+            int[] layout = Game.standardLayout[i];
+            Point3D center = new Point3D(layout[2], layout[3], layout[4]);
+            if (i > 0) {
+                center = center.add(random.nextDouble() * 100 - 50, random.nextDouble() * 50 - 25, random.nextDouble() * 100 - 50);
+            }
+            game.getAmoebas()[i] = new Amoeba(game, layout[0], layout[1], null, center);//never drawn
+        }
+        return game;
+    }
+
+    /**
+     * plays one game to the end, or until it runs out of ticks
+     * @param difficulty the difficulty to play at
+     * @param gameSeed the seed for the starting positions
+     * @return what happened
+     */
+    private GameResult playGame(double difficulty, long gameSeed) {
+        Game game = buildGame(difficulty, gameSeed);
+        Simulation simulation = new Simulation(game);
+        ScriptedPlayer player = new ScriptedPlayer(game, reactionTicks, 60);
+        float[] hpCurve = new float[maxTicks / sampleEvery + 1];
+        int samples = 0;
+        int tick = 0;
+        while (tick < maxTicks && game.getOutcome() == Game.PLAYING && game.getPlayer().isAlive()) {
+            if (tick % sampleEvery == 0) {
+                hpCurve[samples++] = (float) game.getPlayer().getHp();
+            }
+            player.think();
+            simulation.tick(player.getInput());
+            tick++;
+        }
+        int outcome = game.getOutcome();
+        if (outcome == Game.PLAYING && !game.getPlayer().isAlive()) {
+            outcome = Game.LOST;
+        }
+        return new GameResult(difficulty, outcome, tick, game.getPlayer().getHp(), Arrays.copyOf(hpCurve, samples));
+    }
+
+    /**
+     * writes the wins, losses, timeouts and time to victory for every difficulty, and prints them
+     * @param results every game played
+     */
+    private void writeResults(List<GameResult> results) throws IOException {
+        try (PrintWriter csv = new PrintWriter(new FileWriter(outputFile))) {
+            csv.println("difficulty,games,wins,losses,timeouts,win_rate,mean_seconds_to_win,median_seconds_to_win,mean_seconds_to_lose,mean_final_hp");
+            System.out.printf("%10s %6s %6s %6s %8s %9s %12s %12s %9s%n", "difficulty", "games", "wins", "losses", "timeouts", "win rate", "mean win s", "median win s", "final hp");
+            for (double difficulty : difficulties) {
+                List<GameResult> games = results.stream().filter(result -> result.difficulty() == difficulty).toList();
+                int[] winTicks = games.stream().filter(result -> result.outcome() == Game.WON).mapToInt(GameResult::ticks).sorted().toArray();
+                int[] loseTicks = games.stream().filter(result -> result.outcome() == Game.LOST).mapToInt(GameResult::ticks).toArray();
+                int timeouts = games.size() - winTicks.length - loseTicks.length;
+                double winRate = games.isEmpty() ? 0 : (double) winTicks.length / games.size();
+                double meanWin = Arrays.stream(winTicks).average().orElse(Double.NaN) / ticksPerSecond;
+                double medianWin = winTicks.length == 0 ? Double.NaN : winTicks[winTicks.length / 2] / ticksPerSecond;
+                double meanLose = Arrays.stream(loseTicks).average().orElse(Double.NaN) / ticksPerSecond;
+                double meanFinalHp = games.stream().mapToDouble(GameResult::finalHp).average().orElse(Double.NaN);
+                System.out.printf("%10.2f %6d %6d %6d %8d %8.0f%% %12.1f %12.1f %9.2f%n", difficulty, games.size(), winTicks.length, loseTicks.length, timeouts, winRate * 100,
+                        meanWin, medianWin, meanFinalHp);
+                csv.println(String.format("%.2f,%d,%d,%d,%d,%.4f,%.2f,%.2f,%.2f,%.4f", difficulty, games.size(), winTicks.length, loseTicks.length, timeouts, winRate,
+                        meanWin, medianWin, meanLose, meanFinalHp));
+            }
+        }
+    }
+
+    /**
+     * writes the average, lowest, and highest player hp at every sample for every difficulty. A game that has ended keeps its final hp, so the curve shows where
+     * the players ended up rather than only the ones still playing
+     * @param results every game played
+     */
+    private void writeCurves(List<GameResult> results) throws IOException {
+        try (PrintWriter csv = new PrintWriter(new FileWriter(curvesFile))) {
+            csv.println("difficulty,seconds,mean_hp,min_hp,max_hp,games_playing");
+            for (double difficulty : difficulties) {
+                List<GameResult> games = results.stream().filter(result -> result.difficulty() == difficulty).toList();
+                int longest = games.stream().mapToInt(result -> result.hpCurve().length).max().orElse(0);
+                for (int sample = 0; sample < longest; sample++) {
+                    double sum = 0;
+                    double min = Double.MAX_VALUE;
+                    double max = -Double.MAX_VALUE;
+                    int playing = 0;
+                    for (GameResult game : games) {
+                        double hp = sample < game.hpCurve().length ? game.hpCurve()[sample] : game.finalHp();
+                        if (sample < game.hpCurve().length) {
+                            playing++;
+                        }
+                        sum += hp;
+                        min = Math.min(min, hp);
+                        max = Math.max(max, hp);
+                    }
+                    csv.println(String.format("%.2f,%.1f,%.4f,%.4f,%.4f,%d", difficulty, sample * sampleEvery / ticksPerSecond, sum / games.size(), min, max, playing));
+                }
+            }
+        }
+    }
+
+    /**
+     * roughly measures how much memory one game takes by building a few and comparing the heap before and after
+     * @return the number of bytes per game
+     */
+    private long measureGameBytes() {
+        int count = 20;
+        Game[] games = new Game[count];
+        System.gc();
+        long before = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        for (int i = 0; i < count; i++) {
+            games[i] = buildGame(1, i);
+        }
+        System.gc();
+        long after = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long bytesPerGame = Math.max(0, after - before) / count;
+        if (games[count - 1] == null) {//keeps the games reachable until the heap has been measured
+            return 0;
+        }
+        return bytesPerGame;
+    }
+}
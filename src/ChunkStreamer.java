@@ -0,0 +1,361 @@
+import javafx.geometry.Point3D;
+import javafx.scene.Group;
+import javafx.scene.shape.Box;
+import javafx.scene.shape.Sphere;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Splits the world into square chunks on the floor and only keeps the ones around the camera target loaded, so the player can swim as far as they like without
+ * the number of nodes growing. Each chunk has a floor tile, background spheres, and a few amoebas of its own. Chunks are built on worker threads into groups
+ * that aren't attached to anything, the same way the world is built at startup, and attached on the JavaFX thread once they're done. When the player swims away
+ * the chunks behind them are dropped, and any amoebas in them go dormant: they leave the simulation and only their size and position are kept, so they're
+ * still there when the player comes back. The background is made from a seed, so a chunk looks the same every time it's loaded. The workers never look at
+ * the game's amoebas, the chunk amoebas start as food and the game compares them with the player when they join.
+ * Everything here except building the chunks runs on the JavaFX thread
+ */
+public class ChunkStreamer {
+    /**
+     * an amoeba that left the simulation when its chunk was unloaded. It's made again with the vertex count and radius it started with and then given its hp,
+     * since the remesher leaves it with whatever number of vertices, and each new number would need a template of its own
+     * @param vertices the number of vertices it was made with
+     * @param radius the radius it was made with
+     * @param hp its hp
+     * @param center where it was
+     */
+    private record DormantAmoeba(int vertices, int radius, double hp, Point3D center) {
+    }
+
+    /**
+     * a chunk that a worker thread has finished building
+     * @param key the chunk
+     * @param background the floor tile and background spheres
+     * @param amoebas the amoebas in the chunk, each drawn in its own group
+     */
+    private record BuiltChunk(long key, Group background, List<Amoeba> amoebas) {
+    }
+
+    /**
+     * a chunk that a worker thread failed to build, everything it was given goes back so it can be tried again
+     * @param key the chunk
+     * @param sleeping the amoebas that went dormant in the chunk, null if there were none
+     * @param firstVisit whether it was going to get new amoebas
+     */
+    private record FailedChunk(long key, List<DormantAmoeba> sleeping, boolean firstVisit) {
+    }
+
+    /** the game the chunk amoebas join **/
+    private final Game game;
+
+    /** the threads that build the chunks **/
+    private final ExecutorService builder;
+
+    /** the width and depth of a chunk **/
+    private final double chunkSize;
+
+    /** how many chunks in each direction from the one the camera target is in are kept loaded **/
+    private final int loadRadius;
+
+    /** the number of background spheres in a chunk **/
+    private final int spheresPerChunk;
+
+    /** the most amoebas a chunk starts with **/
+    private final int maxAmoebasPerChunk;
+
+    /** the seed the chunks are made from **/
+    private final long seed;
+
+    /** holds the background of every loaded chunk and the group of every chunk amoeba, attached to the scene **/
+    private final Group root = new Group();
+
+    /** the background of every chunk that's attached, by chunk **/
+    private final Map<Long, Group> loaded = new HashMap<>();
+
+    /** the chunks being built **/
+    private final Set<Long> loading = new HashSet<>();
+
+    /** the chunks that have ever been loaded, they don't get new amoebas the second time **/
+    private final Set<Long> visited = new HashSet<>();
+
+    /** the amoebas that went dormant in every chunk that isn't loaded **/
+    private final Map<Long, List<DormantAmoeba>> dormant = new HashMap<>();
+
+    /** the chunks the workers have finished, waiting to be attached on the JavaFX thread **/
+    private final ConcurrentLinkedQueue<BuiltChunk> built = new ConcurrentLinkedQueue<>();
+
+    /** the chunks the workers failed to build, cleared on the JavaFX thread so they're tried again the next time the camera target changes chunk **/
+    private final ConcurrentLinkedQueue<FailedChunk> failed = new ConcurrentLinkedQueue<>();
+
+    /** the amoebas that came from chunks rather than the standard layout, only these are ever unloaded **/
+    private final Set<Amoeba> streamed = new HashSet<>();
+
+    /** the chunk amoebas that have been asked to leave the game, their groups are removed once a snapshot no longer has them **/
+    private final Set<Amoeba> leaving = new HashSet<>();
+
+    /** whether the camera target has been placed in a chunk yet **/
+    private boolean started = false;
+
+    /** the x of the chunk the camera target is in **/
+    private int centerX;
+
+    /** the z of the chunk the camera target is in **/
+    private int centerZ;
+
+    /**
+     * Constructor for the chunk streamer
+     * @param game the game the chunk amoebas join
+     * @param builder the threads that build the chunks
+     * @param chunkSize the width and depth of a chunk
+     * @param loadRadius how many chunks in each direction from the one the camera target is in are kept loaded
+     * @param spheresPerChunk the number of background spheres in a chunk
+     * @param maxAmoebasPerChunk the most amoebas a chunk starts with
+     * @param seed the seed the chunks are made from
+     */
+    public ChunkStreamer(Game game, ExecutorService builder, double chunkSize, int loadRadius, int spheresPerChunk, int maxAmoebasPerChunk, long seed) {
+        this.game = game;
+        this.builder = builder;
+        this.chunkSize = chunkSize;
+        this.loadRadius = loadRadius;
+        this.spheresPerChunk = spheresPerChunk;
+        this.maxAmoebasPerChunk = maxAmoebasPerChunk;
+        this.seed = seed;
+    }
+
+    /**
+     * returns the group holding everything the chunks draw, attach it to the scene once
+     */
+    public Group getRoot() {
+        return root;
+    }
+
+    /**
+     * attaches the chunks that have finished building, starts building the chunks that have come into range, drops the ones that have gone out of range, and
+     * sends the chunk amoebas that have swum out of range to sleep. Call it every frame on the JavaFX thread
+     * @param cameraTarget the point the camera is looking at
+     * @param snapshot the newest snapshot of the simulation, used for where the amoebas are, null before the first tick
+     */
+    public void update(Point3D cameraTarget, WorldSnapshot snapshot) {
+        int x = chunkIndex(cameraTarget.getX());
+        int z = chunkIndex(cameraTarget.getZ());
+        boolean moved = !started || x != centerX || z != centerZ;
+        started = true;
+        centerX = x;
+        centerZ = z;
+        for (FailedChunk chunk = failed.poll(); chunk != null; chunk = failed.poll()) {
+            loading.remove(chunk.key());
+            if (chunk.sleeping() != null) {
+                dormant.put(chunk.key(), chunk.sleeping());
+            }
+            if (chunk.firstVisit()) {
+                visited.remove(chunk.key());
+            }
+        }
+        for (BuiltChunk chunk = built.poll(); chunk != null; chunk = built.poll()) {
+            loading.remove(chunk.key());
+            if (isInRange(chunk.key())) {
+                root.getChildren().add(chunk.background());
+                loaded.put(chunk.key(), chunk.background());
+                for (Amoeba amoeba : chunk.amoebas()) {
+                    root.getChildren().add(amoeba.getDraw());
+                    streamed.add(amoeba);
+                    game.addAmoeba(amoeba);
+                }
+            } else {//the player swam away while it was being built, so its amoebas go straight back to sleep
+                for (Amoeba amoeba : chunk.amoebas()) {
+                    sendToSleep(chunk.key(), amoeba, amoeba.getTrueCenter(), amoeba.getHp());
+                }
+            }
+        }
+        if (moved) {
+            Iterator<Map.Entry<Long, Group>> chunks = loaded.entrySet().iterator();
+            while (chunks.hasNext()) {
+                Map.Entry<Long, Group> chunk = chunks.next();
+                if (!isInRange(chunk.getKey())) {
+                    root.getChildren().remove(chunk.getValue());
+                    chunks.remove();
+                }
+            }
+            for (int chunkX = x - loadRadius; chunkX <= x + loadRadius; chunkX++) {
+                for (int chunkZ = z - loadRadius; chunkZ <= z + loadRadius; chunkZ++) {
+                    long key = key(chunkX, chunkZ);
+                    if (!loaded.containsKey(key) && !loading.contains(key)) {
+                        load(key, chunkX, chunkZ);
+                    }
+                }
+            }
+        }
+        if (snapshot != null) {
+            Amoeba[] amoebas = snapshot.getAmoebas();
+            for (int i = 0; i < amoebas.length; i++) {
+                Amoeba amoeba = amoebas[i];
+                if (!streamed.contains(amoeba) || leaving.contains(amoeba)) {
+                    continue;
+                }
+                Point3D center = snapshot.getTrueCenter(i);
+                long key = key(chunkIndex(center.getX()), chunkIndex(center.getZ()));
+                if (!isInRange(key)) {//it swam, or was left, outside the loaded chunks
+                    if (snapshot.isAlive(i)) {
+                        sendToSleep(key, amoeba, center, snapshot.getHp(i));
+                    }
+                    leaving.add(amoeba);
+                    game.removeAmoeba(amoeba);
+                }
+            }
+            //the game takes amoebas out at the start of a tick, so their groups can go once a snapshot doesn't have them anymore
+            Iterator<Amoeba> gone = leaving.iterator();
+            while (gone.hasNext()) {
+                Amoeba amoeba = gone.next();
+                if (!contains(amoebas, amoeba)) {
+                    root.getChildren().remove(amoeba.getDraw());
+                    streamed.remove(amoeba);
+                    gone.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * starts building a chunk on a worker thread. Its dormant amoebas are handed to the worker, and a chunk that has never been loaded gets new ones as well
+     * @param key the chunk
+     * @param chunkX the x of the chunk
+     * @param chunkZ the z of the chunk
+     */
+    private void load(long key, int chunkX, int chunkZ) {
+        List<DormantAmoeba> sleeping = dormant.remove(key);
+        boolean firstVisit = visited.add(key);
+        loading.add(key);
+        builder.execute(() -> {
+            try {
+                built.add(build(key, chunkX, chunkZ, sleeping, firstVisit));
+            } catch (RuntimeException e) {//hand everything back, so the chunk isn't lost for the rest of the game
+                System.err.println("Chunk " + chunkX + ", " + chunkZ + " failed to build: " + e.getMessage());
+                failed.add(new FailedChunk(key, sleeping, firstVisit));
+            }
+        });
+    }
+
+    /**
+     * builds the background and amoebas of a chunk. Runs on a worker thread, nothing here is attached to the scene yet
+     * @param key the chunk
+     * @param chunkX the x of the chunk
+     * @param chunkZ the z of the chunk
+     * @param sleeping the amoebas that went dormant in this chunk, null if there are none
+     * @param firstVisit whether the chunk has never been loaded before, so it gets new amoebas
+     */
+    private BuiltChunk build(long key, int chunkX, int chunkZ, List<DormantAmoeba> sleeping, boolean firstVisit) {
+        Random random = new Random(seed ^ (key * 0x9E3779B97F4A7C15L));//the same chunk always gets the same random numbers
+        double minX = chunkX * chunkSize;
+        double minZ = chunkZ * chunkSize;
+        Group background = new Group();
+        Box floor = new Box(chunkSize, 1, chunkSize);
+        floor.setTranslateX(minX + chunkSize / 2);
+        floor.setTranslateZ(minZ + chunkSize / 2);
+        background.getChildren().add(floor);
+        for (int i = 0; i < spheresPerChunk; i++) {
+            Sphere sphere = new Sphere((int) (0.2 + random.nextDouble() * 5), (int) (1 + random.nextDouble() * 5)); // Create random spheres
+            sphere.setTranslateX(minX + random.nextDouble() * chunkSize);
+            sphere.setTranslateY(random.nextDouble() * 1000 - 500);
+            sphere.setTranslateZ(minZ + random.nextDouble() * chunkSize);
+            background.getChildren().add(sphere);
+        }
+        List<Amoeba> amoebas = new ArrayList<>();
+        if (sleeping != null) {
+            for (DormantAmoeba amoeba : sleeping) {
+                Amoeba awake = new Amoeba(game, amoeba.vertices(), amoeba.radius(), new Group(), amoeba.center(), 1, random);//food until the game compares it with the player
+                awake.restoreHp(amoeba.hp());
+                amoebas.add(awake);
+            }
+        }
+        if (firstVisit && (chunkX != 0 || chunkZ != 0)) {//the standard layout already fills the chunk the game starts in
+            int count = random.nextInt(maxAmoebasPerChunk + 1);
+            for (int i = 0; i < count; i++) {
+                Point3D center = new Point3D(minX + random.nextDouble() * chunkSize, -50 - random.nextDouble() * 450, minZ + random.nextDouble() * chunkSize);
+                amoebas.add(new Amoeba(game, 60, 10 + random.nextInt(41), new Group(), center, 1, random));
+            }
+        }
+        return new BuiltChunk(key, background, amoebas);
+    }
+
+    /**
+     * keeps the size and position of an amoeba so it can be made again when its chunk is loaded
+     * @param key the chunk it's in
+     * @param amoeba the amoeba
+     * @param center where it is
+     * @param hp its hp, from the snapshot if it's in the game
+     */
+    private void sendToSleep(long key, Amoeba amoeba, Point3D center, double hp) {
+        dormant.computeIfAbsent(key, ignored -> new ArrayList<>()).add(new DormantAmoeba(amoeba.getInitialNumberOfVertices(), amoeba.getInitialRadius(),
+                hp, center));
+    }
+
+    /**
+     * returns whether a chunk is close enough to the camera target to be loaded
+     * @param key the chunk
+     */
+    private boolean isInRange(long key) {
+        int x = (int) (key >> 32);
+        int z = (int) key;
+        return Math.abs(x - centerX) <= loadRadius && Math.abs(z - centerZ) <= loadRadius;
+    }
+
+    /**
+     * returns the index of the chunk a coordinate is in
+     * @param coordinate an x or z coordinate
+     */
+    private int chunkIndex(double coordinate) {
+        return (int) Math.floor(coordinate / chunkSize);
+    }
+
+    /**
+     * packs the x and z of a chunk into one number
+     * @param chunkX the x of the chunk
+     * @param chunkZ the z of the chunk
+     */
+    private static long key(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * checks if an array holds an amoeba, there are only a few dozen so looking through them is fine
+     * @param amoebas the array
+     * @param amoeba the amoeba to look for
+     */
+    private static boolean contains(Amoeba[] amoebas, Amoeba amoeba) {
+        for (Amoeba other : amoebas) {
+            if (other == amoeba) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * returns the number of chunks attached to the scene
+     */
+    public int getLoadedChunks() {
+        return loaded.size();
+    }
+
+    /**
+     * returns the number of amoebas from chunks that are in the game
+     */
+    public int getStreamedAmoebas() {
+        return streamed.size();
+    }
+
+    /**
+     * returns the number of amoebas asleep in chunks that aren't loaded
+     */
+    public int getDormantAmoebas() {
+        return dormant.values().stream().mapToInt(List::size).sum();
+    }
+}
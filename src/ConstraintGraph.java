@@ -0,0 +1,361 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The connections between the vertices of an amoeba, stored once per pair rather than once per vertex. Each vertex keeps six connections, but most of them
+ * point both ways and some point at the vertex itself, so the graph collapses them into undirected edges with their rest length attached.
+ * <p>
+ * The neighbours of every vertex are stored in compressed sparse row form: the neighbours of vertex v are {@code neighbours[rowOffsets[v]]} up to
+ * {@code neighbours[rowOffsets[v + 1] - 1]}. The edges are also coloured so that no two edges of the same colour share a vertex, and sorted by colour,
+ * so within one colour each vertex is moved by at most one edge.
+ * <p>
+ * When the remesher changes a few vertices the graph isn't built again from nothing. Edges away from the change keep their colour, only the edges of the
+ * vertices that were rewired are found again and coloured around the ones that were kept
+ */
+public class ConstraintGraph {
+    /** the number of vertices in the graph **/
+    private final int numberOfVertices;
+
+    /** where the neighbours of each vertex start in the neighbours array, with one extra entry at the end **/
+    private final int[] rowOffsets;
+
+    /** the neighbours of every vertex, one after another **/
+    private final int[] neighbours;
+
+    /** the edge that connects each vertex to each of its neighbours, lines up with the neighbours array **/
+    private final int[] neighbourEdges;
+
+    /** the first vertex of every edge, sorted by colour **/
+    private final int[] edgeFrom;
+
+    /** the second vertex of every edge, sorted by colour **/
+    private final int[] edgeTo;
+
+    /** the rest length of every edge before the amoeba is scaled **/
+    private final double[] restLengths;
+
+    /** where the edges of each colour start, with one extra entry at the end **/
+    private final int[] colourOffsets;
+
+    /**
+     * Constructor for the graph
+     * @param numberOfVertices the number of vertices
+     * @param from the first vertex of every edge
+     * @param to the second vertex of every edge
+     * @param lengths the rest length of every edge
+     */
+    public ConstraintGraph(int numberOfVertices, int[] from, int[] to, double[] lengths) {
+        this(numberOfVertices, from, to, lengths, greedyColours(numberOfVertices, from, to));
+    }
+
+    /**
+     * Constructor for a graph whose edges have already been coloured
+     * @param numberOfVertices the number of vertices
+     * @param from the first vertex of every edge
+     * @param to the second vertex of every edge
+     * @param lengths the rest length of every edge
+     * @param colours the colour of every edge, no two edges of a colour share a vertex
+     */
+    private ConstraintGraph(int numberOfVertices, int[] from, int[] to, double[] lengths, int[] colours) {
+        this.numberOfVertices = numberOfVertices;
+        int numberOfEdges = from.length;
+        int numberOfColours = 0;
+        for (int colour : colours) {
+            numberOfColours = Math.max(numberOfColours, colour + 1);
+        }
+
+        //sort the edges by colour with a counting sort
+        colourOffsets = new int[numberOfColours + 1];
+        for (int colour : colours) {
+            colourOffsets[colour + 1]++;
+        }
+        for (int colour = 0; colour < numberOfColours; colour++) {
+            colourOffsets[colour + 1] += colourOffsets[colour];
+        }
+        edgeFrom = new int[numberOfEdges];
+        edgeTo = new int[numberOfEdges];
+        restLengths = new double[numberOfEdges];
+        int[] next = Arrays.copyOf(colourOffsets, numberOfColours);
+        for (int edge = 0; edge < numberOfEdges; edge++) {
+            int sorted = next[colours[edge]]++;
+            edgeFrom[sorted] = from[edge];
+            edgeTo[sorted] = to[edge];
+            restLengths[sorted] = lengths[edge];
+        }
+
+        //build the compressed rows, every edge appears in the rows of both its vertices
+        rowOffsets = new int[numberOfVertices + 1];
+        for (int edge = 0; edge < numberOfEdges; edge++) {
+            rowOffsets[edgeFrom[edge] + 1]++;
+            rowOffsets[edgeTo[edge] + 1]++;
+        }
+        for (int vertex = 0; vertex < numberOfVertices; vertex++) {
+            rowOffsets[vertex + 1] += rowOffsets[vertex];
+        }
+        neighbours = new int[numberOfEdges * 2];
+        neighbourEdges = new int[numberOfEdges * 2];
+        int[] fill = Arrays.copyOf(rowOffsets, numberOfVertices);
+        for (int edge = 0; edge < numberOfEdges; edge++) {
+            neighbours[fill[edgeFrom[edge]]] = edgeTo[edge];
+            neighbourEdges[fill[edgeFrom[edge]]++] = edge;
+            neighbours[fill[edgeTo[edge]]] = edgeFrom[edge];
+            neighbourEdges[fill[edgeTo[edge]]++] = edge;
+        }
+    }
+
+    /**
+     * colours the edges greedily, each edge gets the lowest colour neither of its vertices has used yet
+     * @param numberOfVertices the number of vertices
+     * @param from the first vertex of every edge
+     * @param to the second vertex of every edge
+     */
+    private static int[] greedyColours(int numberOfVertices, int[] from, int[] to) {
+        BitSet[] usedColours = new BitSet[numberOfVertices];
+        for (int i = 0; i < numberOfVertices; i++) {
+            usedColours[i] = new BitSet();
+        }
+        int[] colours = new int[from.length];
+        for (int edge = 0; edge < from.length; edge++) {
+            BitSet used = (BitSet) usedColours[from[edge]].clone();
+            used.or(usedColours[to[edge]]);
+            int colour = used.nextClearBit(0);
+            colours[edge] = colour;
+            usedColours[from[edge]].set(colour);
+            usedColours[to[edge]].set(colour);
+        }
+        return colours;
+    }
+
+    /**
+     * makes the graph for the vertices after the remesher has changed some of them. Edges between two vertices that weren't changed are kept with their colour
+     * and rest length, only moved to the new vertex IDs. The edges of the changed vertices are read from their connections again, and each gets the lowest
+     * colour neither of its vertices is using in the kept edges or the ones coloured before it. Gives the same edges as fromVertices
+     * @param vertices the vertices after the change, already renumbered
+     * @param newIDs the new ID of every vertex in this graph, -1 if it was removed
+     * @param changed for every new vertex ID, whether its connections may have changed. Vertices that were added count as changed
+     */
+    public ConstraintGraph rewire(Vertex[] vertices, int[] newIDs, boolean[] changed) {
+        int numberOfEdges = edgeFrom.length;
+        boolean[] kept = new boolean[numberOfEdges];
+        int numberKept = 0;
+        for (int edge = 0; edge < numberOfEdges; edge++) {
+            int a = newIDs[edgeFrom[edge]];
+            int b = newIDs[edgeTo[edge]];
+            kept[edge] = a >= 0 && b >= 0 && !changed[a] && !changed[b];
+            if (kept[edge]) {
+                numberKept++;
+            }
+        }
+        //the edges touching a changed vertex, from the connections the same way fromVertices finds them
+        Map<Long, Double> found = new LinkedHashMap<>();
+        for (Vertex vertex : vertices) {
+            Vertex[] connections = vertex.getConnections();
+            for (int i = 0; i < connections.length; i++) {
+                Vertex other = connections[i];
+                if (other == null || other == vertex || (!changed[vertex.getVertexID()] && !changed[other.getVertexID()])) {
+                    continue;
+                }
+                int a = Math.min(vertex.getVertexID(), other.getVertexID());
+                int b = Math.max(vertex.getVertexID(), other.getVertexID());
+                found.putIfAbsent((long) a * vertices.length + b, vertex.getRestLength(i) / vertex.getScaleFactor());
+            }
+        }
+        int total = numberKept + found.size();
+        int[] from = new int[total];
+        int[] to = new int[total];
+        double[] lengths = new double[total];
+        int[] colours = new int[total];
+        int next = 0;
+        for (int colour = 0; colour < getNumberOfColours(); colour++) {
+            for (int edge = colourOffsets[colour]; edge < colourOffsets[colour + 1]; edge++) {
+                if (kept[edge]) {
+                    from[next] = newIDs[edgeFrom[edge]];
+                    to[next] = newIDs[edgeTo[edge]];
+                    lengths[next] = restLengths[edge];
+                    colours[next++] = colour;
+                }
+            }
+        }
+        //the colours the kept edges use at each end of the new edges, only worked out for the vertices that need them
+        int[] oldIDs = new int[vertices.length];
+        Arrays.fill(oldIDs, -1);
+        for (int vertex = 0; vertex < numberOfVertices; vertex++) {
+            if (newIDs[vertex] >= 0) {
+                oldIDs[newIDs[vertex]] = vertex;
+            }
+        }
+        Map<Integer, BitSet> usedColours = new HashMap<>();
+        for (Map.Entry<Long, Double> edge : found.entrySet()) {
+            int a = (int) (edge.getKey() / vertices.length);
+            int b = (int) (edge.getKey() % vertices.length);
+            BitSet used = (BitSet) usedColours.computeIfAbsent(a, vertex -> keptColours(vertex, oldIDs[vertex], kept)).clone();
+            used.or(usedColours.computeIfAbsent(b, vertex -> keptColours(vertex, oldIDs[vertex], kept)));
+            int colour = used.nextClearBit(0);
+            usedColours.get(a).set(colour);
+            usedColours.get(b).set(colour);
+            from[next] = a;
+            to[next] = b;
+            lengths[next] = edge.getValue();
+            colours[next++] = colour;
+        }
+        return new ConstraintGraph(vertices.length, from, to, lengths, colours);
+    }
+
+    /**
+     * finds the colours of the kept edges of a vertex, by looking through its row in this graph
+     * @param vertex the new ID of the vertex
+     * @param oldID its ID in this graph, -1 if it was just added
+     * @param kept which edges of this graph are kept
+     */
+    private BitSet keptColours(int vertex, int oldID, boolean[] kept) {
+        BitSet used = new BitSet();
+        if (oldID < 0) {
+            return used;
+        }
+        for (int i = rowOffsets[oldID]; i < rowOffsets[oldID + 1]; i++) {
+            int edge = neighbourEdges[i];
+            if (kept[edge]) {
+                used.set(colourOf(edge));
+            }
+        }
+        return used;
+    }
+
+    /**
+     * finds the colour of an edge from where it sits in the sorted edges
+     * @param edge the index of the edge
+     */
+    private int colourOf(int edge) {
+        int colour = Arrays.binarySearch(colourOffsets, edge);
+        if (colour < 0) {
+            return -colour - 2;//the colour whose range it falls inside
+        }
+        while (colourOffsets[colour + 1] == edge) {//empty colours share an offset with the next one
+            colour++;
+        }
+        return colour;
+    }
+
+    /**
+     * builds the graph from the connections of the vertices of an amoeba. Pairs that are connected both ways become one edge, using the rest length of
+     * whichever connection comes first, and connections from a vertex to itself are left out
+     * @param vertices the vertices of the amoeba, indexed by vertex ID
+     */
+    public static ConstraintGraph fromVertices(Vertex[] vertices) {
+        Map<Long, Double> edges = new LinkedHashMap<>();
+        for (Vertex vertex : vertices) {
+            Vertex[] connections = vertex.getConnections();
+            for (int i = 0; i < connections.length; i++) {
+                if (connections[i] == null || connections[i] == vertex) {
+                    continue;
+                }
+                int a = Math.min(vertex.getVertexID(), connections[i].getVertexID());
+                int b = Math.max(vertex.getVertexID(), connections[i].getVertexID());
+                edges.putIfAbsent((long) a * vertices.length + b, vertex.getRestLength(i) / vertex.getScaleFactor());
+            }
+        }
+        List<Long> keys = new ArrayList<>(edges.keySet());
+        int[] from = new int[keys.size()];
+        int[] to = new int[keys.size()];
+        double[] lengths = new double[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            long key = keys.get(i);
+            from[i] = (int) (key / vertices.length);
+            to[i] = (int) (key % vertices.length);
+            lengths[i] = edges.get(key);
+        }
+        return new ConstraintGraph(vertices.length, from, to, lengths);
+    }
+
+    /**
+     * returns the number of vertices in the graph
+     */
+    public int getNumberOfVertices() {
+        return numberOfVertices;
+    }
+
+    /**
+     * returns the number of edges in the graph
+     */
+    public int getNumberOfEdges() {
+        return edgeFrom.length;
+    }
+
+    /**
+     * returns the number of colours, every edge of one colour can be solved at the same time
+     */
+    public int getNumberOfColours() {
+        return colourOffsets.length - 1;
+    }
+
+    /**
+     * returns the index of the first edge of a colour
+     * @param colour the colour
+     */
+    public int getColourStart(int colour) {
+        return colourOffsets[colour];
+    }
+
+    /**
+     * returns the index one past the last edge of a colour
+     * @param colour the colour
+     */
+    public int getColourEnd(int colour) {
+        return colourOffsets[colour + 1];
+    }
+
+    /**
+     * returns the first vertex of an edge
+     * @param edge the index of the edge
+     */
+    public int getEdgeFrom(int edge) {
+        return edgeFrom[edge];
+    }
+
+    /**
+     * returns the second vertex of an edge
+     * @param edge the index of the edge
+     */
+    public int getEdgeTo(int edge) {
+        return edgeTo[edge];
+    }
+
+    /**
+     * returns the rest length of an edge before the amoeba is scaled
+     * @param edge the index of the edge
+     */
+    public double getRestLength(int edge) {
+        return restLengths[edge];
+    }
+
+    /**
+     * returns the number of neighbours a vertex has
+     * @param vertex the index of the vertex
+     */
+    public int getDegree(int vertex) {
+        return rowOffsets[vertex + 1] - rowOffsets[vertex];
+    }
+
+    /**
+     * returns one of the neighbours of a vertex
+     * @param vertex the index of the vertex
+     * @param i which neighbour, from 0 up to the degree
+     */
+    public int getNeighbour(int vertex, int i) {
+        return neighbours[rowOffsets[vertex] + i];
+    }
+
+    /**
+     * returns the edge connecting a vertex to one of its neighbours
+     * @param vertex the index of the vertex
+     * @param i which neighbour, from 0 up to the degree
+     */
+    public int getNeighbourEdge(int vertex, int i) {
+        return neighbourEdges[rowOffsets[vertex] + i];
+    }
+}
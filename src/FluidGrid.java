@@ -0,0 +1,402 @@
+import javafx.geometry.Point3D;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The water the amoebas swim in, a coarse 3D grid of velocities solved the stable fluids way: the amoebas push the water they're in, the push spreads out through
+ * viscosity, the water is kept from piling up or emptying out by a pressure projection, and then it carries itself along. The amoebas and their vertices are
+ * dragged towards the velocity of the water around them instead of towards standing still, so a big amoeba swimming past leaves a current that carries small
+ * ones with it. Amoebas only talk to the grid, never to each other, so the cost depends on the grid size and not on how many pairs of amoebas there are.
+ * <p>
+ * The grid wraps around in x and z, so it covers the whole world however far the player swims, and two places a whole grid apart share the same water.
+ * With a resolution of 16 and cells 100 across that's 1600 units, much further than anything can be seen. It doesn't wrap in y: the bottom layer of cells
+ * sits on the floor, which water can't flow through, and the grid reaches up resolution - 1 cells from there. Above that the water is the same as in the top
+ * layer. Each step works through the grid one z layer at a time, and the layers are split between the threads of a ForkJoinPool
+ */
+public class FluidGrid {
+    /** the number of cells along each side, the performance knob, the cost of a step goes up with its cube **/
+    private final int resolution;
+
+    /** the width of a cell in world units **/
+    private final double cellSize;
+
+    /** how quickly pushes spread into the cells around them, in cells squared per tick **/
+    private final double viscosity;
+
+    /** the fraction of the water's speed that's kept every tick, so currents die down once nothing is pushing them **/
+    private final double retention;
+
+    /** the number of Jacobi iterations for the viscosity and the pressure **/
+    private final int iterations;
+
+    /** the fraction of an amoeba's velocity it gives to the water every tick **/
+    private final double feedback;
+
+    /** the x velocity of the water in every cell, indexed by x + resolution * (y + resolution * z) **/
+    private double[] velocityX;
+
+    /** the y velocity of the water in every cell **/
+    private double[] velocityY;
+
+    /** the z velocity of the water in every cell **/
+    private double[] velocityZ;
+
+    /** where the next x velocities are written, swapped with the current ones after each stage **/
+    private double[] nextX;
+
+    /** where the next y velocities are written **/
+    private double[] nextY;
+
+    /** where the next z velocities are written **/
+    private double[] nextZ;
+
+    /** the divergence, how much water is flowing out of every cell **/
+    private final double[] divergence;
+
+    /** the pressure in every cell **/
+    private double[] pressure;
+
+    /** where the next pressure is written **/
+    private double[] nextPressure;
+
+    /** the next cell along x or z for every cell, wrapping around at the far edge **/
+    private final int[] up;
+
+    /** the previous cell along x or z for every cell, wrapping around at the near edge **/
+    private final int[] down;
+
+    /** the next cell along y for every cell, the floor and the top layer are their own neighbours past the edge **/
+    private final int[] upY;
+
+    /** the previous cell along y for every cell **/
+    private final int[] downY;
+
+    /** the y of the layer of cells sitting on the floor **/
+    private final int floorLayer;
+
+    /** the threads that solve the layers in parallel, null to solve them one after another **/
+    private ForkJoinPool pool;
+
+    /**
+     * Constructor for the fluid grid, the water starts still
+     * @param resolution the number of cells along each side
+     * @param cellSize the width of a cell in world units
+     * @param viscosity how quickly pushes spread into the cells around them, in cells squared per tick
+     * @param retention the fraction of the water's speed that's kept every tick
+     * @param iterations the number of Jacobi iterations for the viscosity and the pressure
+     * @param feedback the fraction of an amoeba's velocity it gives to the water every tick
+     */
+    public FluidGrid(int resolution, double cellSize, double viscosity, double retention, int iterations, double feedback) {
+        this.resolution = resolution;
+        this.cellSize = cellSize;
+        this.viscosity = viscosity;
+        this.retention = retention;
+        this.iterations = iterations;
+        this.feedback = feedback;
+        int cells = resolution * resolution * resolution;
+        velocityX = new double[cells];
+        velocityY = new double[cells];
+        velocityZ = new double[cells];
+        nextX = new double[cells];
+        nextY = new double[cells];
+        nextZ = new double[cells];
+        divergence = new double[cells];
+        pressure = new double[cells];
+        nextPressure = new double[cells];
+        up = new int[resolution];
+        down = new int[resolution];
+        upY = new int[resolution];
+        downY = new int[resolution];
+        for (int i = 0; i < resolution; i++) {
+            up[i] = (i + 1) % resolution;
+            down[i] = (i + resolution - 1) % resolution;
+            upY[i] = Math.min(i + 1, resolution - 1);
+            downY[i] = Math.max(i - 1, 0);
+        }
+        floorLayer = resolution - 1;
+    }
+
+    /**
+     * makes a grid with the settings the game uses, only the resolution changes. Cells are 100 across, a push spreads a tenth of a cell squared per tick,
+     * currents lose 5% of their speed every tick, and an amoeba gives a fifth of its velocity to the water. Giving much more lets an amoeba get carried along by
+     * its own wake and speed itself up
+     * @param resolution the number of cells along each side
+     */
+    public static FluidGrid standard(int resolution) {
+        return new FluidGrid(resolution, 100, 0.1, 0.95, 10, 0.2);
+    }
+
+    /**
+     * changes how many threads solve the grid
+     * @param threads the number of threads, 1 solves it on the calling thread
+     */
+    public void setThreads(int threads) {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * returns the number of cells along each side
+     */
+    public int getResolution() {
+        return resolution;
+    }
+
+    /**
+     * adds the movement of every live amoeba to the water around it and then moves the water on by one tick. Called by the simulation after every amoeba has
+     * been updated, so the amoebas can update in parallel without writing to the grid at the same time
+     * @param amoebas the amoebas pushing the water
+     * @param timeStep how far forward in time to move, normally the time scale
+     */
+    public void step(Amoeba[] amoebas, double timeStep) {
+        if (timeStep <= 0) {
+            return;
+        }
+        for (Amoeba amoeba : amoebas) {
+            if (amoeba.isAlive()) {
+                push(amoeba.getTrueCenter(), amoeba.getVelocity().multiply(feedback));
+            }
+        }
+        //spread the pushes out, the more viscous and the longer the step the further they spread
+        double spread = viscosity * timeStep;
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            forEachLayer(z -> diffuseLayer(z, spread));
+            swapVelocities();
+        }
+        project();
+        forEachLayer(z -> advectLayer(z, timeStep));
+        swapVelocities();
+        project();
+    }
+
+    /**
+     * finds the velocity of the water at a point, blending the eight cells around it
+     * @param location the point in world coordinates
+     * @return the velocity of the water there
+     */
+    public Point3D sample(Point3D location) {
+        double gridX = location.getX() / cellSize;
+        double gridY = gridY(location.getY());
+        double gridZ = location.getZ() / cellSize;
+        return new Point3D(interpolate(velocityX, gridX, gridY, gridZ), interpolate(velocityY, gridX, gridY, gridZ), interpolate(velocityZ, gridX, gridY, gridZ));
+    }
+
+    /**
+     * adds a velocity to the eight cells around a point, each getting a share for how close it is
+     * @param location the point in world coordinates
+     * @param velocity the velocity to add
+     */
+    private void push(Point3D location, Point3D velocity) {
+        double gridX = location.getX() / cellSize;
+        double gridY = gridY(location.getY());
+        double gridZ = location.getZ() / cellSize;
+        int x0 = (int) Math.floor(gridX);
+        int y0 = (int) Math.floor(gridY);
+        int z0 = (int) Math.floor(gridZ);
+        double fx = gridX - x0;
+        double fy = gridY - y0;
+        double fz = gridZ - z0;
+        for (int corner = 0; corner < 8; corner++) {
+            int dx = corner & 1;
+            int dy = (corner >> 1) & 1;
+            int dz = (corner >> 2) & 1;
+            double weight = (dx == 1 ? fx : 1 - fx) * (dy == 1 ? fy : 1 - fy) * (dz == 1 ? fz : 1 - fz);
+            int cell = index(x0 + dx, y0 + dy, z0 + dz);
+            velocityX[cell] += velocity.getX() * weight;
+            velocityY[cell] += velocity.getY() * weight;
+            velocityZ[cell] += velocity.getZ() * weight;
+        }
+    }
+
+    /**
+     * one Jacobi iteration of viscosity for one layer, every cell moves towards the average of its six neighbours
+     * @param z the layer
+     * @param spread how far the velocity spreads this step
+     */
+    private void diffuseLayer(int z, double spread) {
+        for (int y = 0; y < resolution; y++) {
+            for (int x = 0; x < resolution; x++) {
+                int cell = cell(x, y, z);
+                nextX[cell] = (velocityX[cell] + spread * neighbourSum(velocityX, x, y, z)) / (1 + 6 * spread);
+                nextY[cell] = (velocityY[cell] + spread * neighbourSum(velocityY, x, y, z)) / (1 + 6 * spread);
+                nextZ[cell] = (velocityZ[cell] + spread * neighbourSum(velocityZ, x, y, z)) / (1 + 6 * spread);
+            }
+        }
+    }
+
+    /**
+     * moves the water in one layer along itself, by looking back along the velocity of each cell to find the water that ends up there. Looking back rather
+     * than pushing forward is what keeps it stable however long the step is
+     * @param z the layer
+     * @param timeStep how far forward in time to move
+     */
+    private void advectLayer(int z, double timeStep) {
+        double scale = timeStep / cellSize;
+        for (int y = 0; y < resolution; y++) {
+            for (int x = 0; x < resolution; x++) {
+                int cell = cell(x, y, z);
+                double fromX = x - velocityX[cell] * scale;
+                double fromY = y - velocityY[cell] * scale;
+                double fromZ = z - velocityZ[cell] * scale;
+                nextX[cell] = interpolate(velocityX, fromX, fromY, fromZ) * retention;
+                nextY[cell] = interpolate(velocityY, fromX, fromY, fromZ) * retention;
+                nextZ[cell] = interpolate(velocityZ, fromX, fromY, fromZ) * retention;
+            }
+        }
+    }
+
+    /**
+     * takes away the part of the velocity that makes water pile up in some cells and empty out of others, so the water swirls around amoebas instead of
+     * being squashed by them
+     */
+    private void project() {
+        closeFloor();
+        forEachLayer(z -> {
+            for (int y = 0; y < resolution; y++) {
+                for (int x = 0; x < resolution; x++) {
+                    int cell = cell(x, y, z);
+                    divergence[cell] = 0.5 * (velocityX[cell(up[x], y, z)] - velocityX[cell(down[x], y, z)]
+                            + velocityY[cell(x, upY[y], z)] - velocityY[cell(x, downY[y], z)]
+                            + velocityZ[cell(x, y, up[z])] - velocityZ[cell(x, y, down[z])]);
+                    pressure[cell] = 0;
+                }
+            }
+        });
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            forEachLayer(z -> {
+                for (int y = 0; y < resolution; y++) {
+                    for (int x = 0; x < resolution; x++) {
+                        int cell = cell(x, y, z);
+                        nextPressure[cell] = (neighbourSum(pressure, x, y, z) - divergence[cell]) / 6;
+                    }
+                }
+            });
+            double[] swap = pressure;
+            pressure = nextPressure;
+            nextPressure = swap;
+        }
+        forEachLayer(z -> {
+            for (int y = 0; y < resolution; y++) {
+                for (int x = 0; x < resolution; x++) {
+                    int cell = cell(x, y, z);
+                    velocityX[cell] -= 0.5 * (pressure[cell(up[x], y, z)] - pressure[cell(down[x], y, z)]);
+                    velocityY[cell] -= 0.5 * (pressure[cell(x, upY[y], z)] - pressure[cell(x, downY[y], z)]);
+                    velocityZ[cell] -= 0.5 * (pressure[cell(x, y, up[z])] - pressure[cell(x, y, down[z])]);
+                }
+            }
+        });
+        closeFloor();
+    }
+
+    /**
+     * stops the water on the floor moving into it or out of it, it can still flow along it
+     */
+    private void closeFloor() {
+        for (int z = 0; z < resolution; z++) {
+            for (int x = 0; x < resolution; x++) {
+                velocityY[cell(x, floorLayer, z)] = 0;
+            }
+        }
+    }
+
+    /**
+     * runs some work on every z layer, split between the threads if there are any. Each layer only writes to its own cells, so they can't get in each other's way
+     * @param layer the work for one layer
+     */
+    private void forEachLayer(IntConsumer layer) {
+        if (pool == null) {
+            for (int z = 0; z < resolution; z++) {
+                layer.accept(z);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, resolution).parallel().forEach(layer)).join();
+        }
+    }
+
+    /**
+     * makes the arrays just written the current ones
+     */
+    private void swapVelocities() {
+        double[] swap = velocityX;
+        velocityX = nextX;
+        nextX = swap;
+        swap = velocityY;
+        velocityY = nextY;
+        nextY = swap;
+        swap = velocityZ;
+        velocityZ = nextZ;
+        nextZ = swap;
+    }
+
+    /**
+     * adds up the six neighbours of a cell
+     * @param field the values
+     * @param x the x of the cell
+     * @param y the y of the cell
+     * @param z the z of the cell
+     */
+    private double neighbourSum(double[] field, int x, int y, int z) {
+        return field[cell(down[x], y, z)] + field[cell(up[x], y, z)] + field[cell(x, downY[y], z)] + field[cell(x, upY[y], z)] + field[cell(x, y, down[z])] + field[cell(x, y, up[z])];
+    }
+
+    /**
+     * blends the eight cells around a point in grid coordinates
+     * @param field the values
+     * @param x the x in cells
+     * @param y the y in cells
+     * @param z the z in cells
+     */
+    private double interpolate(double[] field, double x, double y, double z) {
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        int z0 = (int) Math.floor(z);
+        double fx = x - x0;
+        double fy = y - y0;
+        double fz = z - z0;
+        double bottom = lerp(lerp(field[index(x0, y0, z0)], field[index(x0 + 1, y0, z0)], fx), lerp(field[index(x0, y0 + 1, z0)], field[index(x0 + 1, y0 + 1, z0)], fx), fy);
+        double top = lerp(lerp(field[index(x0, y0, z0 + 1)], field[index(x0 + 1, y0, z0 + 1)], fx), lerp(field[index(x0, y0 + 1, z0 + 1)], field[index(x0 + 1, y0 + 1, z0 + 1)], fx), fy);
+        return lerp(bottom, top, fz);
+    }
+
+    /**
+     * blends two values
+     * @param a the value at 0
+     * @param b the value at 1
+     * @param t how far between them
+     */
+    private static double lerp(double a, double b, double t) {
+        return a + (b - a) * t;
+    }
+
+    /**
+     * returns the index of a cell that's already inside the grid, used in the loops over every cell where nothing needs wrapping
+     * @param x the x of the cell
+     * @param y the y of the cell
+     * @param z the z of the cell
+     */
+    private int cell(int x, int y, int z) {
+        return x + resolution * (y + resolution * z);
+    }
+
+    /**
+     * turns a world y into a y in cells, the floor is the last layer and y goes down
+     * @param y the y in world coordinates
+     */
+    private double gridY(double y) {
+        return floorLayer + y / cellSize;
+    }
+
+    /**
+     * returns the index of a cell, wrapping around the edges of the grid in x and z and stopping at the floor and the top layer in y
+     * @param x the x of the cell
+     * @param y the y of the cell
+     * @param z the z of the cell
+     */
+    private int index(int x, int y, int z) {
+        return Math.floorMod(x, resolution) + resolution * (Math.max(0, Math.min(floorLayer, y)) + resolution * Math.floorMod(z, resolution));
+    }
+}
@@ -0,0 +1,149 @@
+import javafx.geometry.Point3D;
+
+/**
+ * Decides whether an amoeba can be seen by the camera, by testing its bounding sphere against the camera's view frustum. Amoebas that are behind the camera,
+ * off to the side, past the far clip plane, or so far away they'd be smaller than a pixel or two are culled. Culled amoebas still move, they just aren't drawn
+ */
+public class FrustumCuller {
+    /** the smallest radius in pixels an amoeba can have on screen before it's culled **/
+    private final double minPixelRadius;
+
+    /** whether culling is on, toggled with C **/
+    private boolean enabled = true;
+
+    /** the position of the camera **/
+    private Point3D cameraPosition = Point3D.ZERO;
+
+    /** the direction the camera faces **/
+    private Point3D forward = new Point3D(0, 0, 1);
+
+    /** the direction to the right of the camera **/
+    private Point3D right = new Point3D(1, 0, 0);
+
+    /** the direction above the camera **/
+    private Point3D up = new Point3D(0, -1, 0);
+
+    /** sine and cosine of half the horizontal field of view **/
+    private double sinHalfWidth;
+    private double cosHalfWidth;
+
+    /** sine and cosine of half the vertical field of view **/
+    private double sinHalfHeight;
+    private double cosHalfHeight;
+
+    /** the near and far clip distances of the camera **/
+    private double nearClip;
+    private double farClip;
+
+    /** how many pixels one world unit covers at a distance of 1 from the camera **/
+    private double pixelsPerUnit;
+
+    /** how many amoebas were culled in the last tick, and how many are being counted in this one **/
+    private int culled = 0;
+    private int lastTickCulled = 0;
+
+    /**
+     * Constructor for the frustum culler
+     * @param minPixelRadius the smallest radius in pixels an amoeba can have on screen before it's culled
+     */
+    public FrustumCuller(double minPixelRadius) {
+        this.minPixelRadius = minPixelRadius;
+    }
+
+    /**
+     * recalculates the frustum from the camera, call this once per tick before testing any amoebas
+     * @param cameraPosition the position of the camera
+     * @param xRotation the rotation of the camera around the x-axis in degrees
+     * @param yRotation the rotation of the camera around the y-axis in degrees
+     * @param fieldOfView the vertical field of view in degrees
+     * @param viewportWidth the width of the scene in pixels
+     * @param viewportHeight the height of the scene in pixels
+     * @param nearClip the near clip distance of the camera
+     * @param farClip the far clip distance of the camera
+     */
+    public void update(Point3D cameraPosition, double xRotation, double yRotation, double fieldOfView, double viewportWidth, double viewportHeight, double nearClip, double farClip) {
+        lastTickCulled = culled;
+        culled = 0;
+        this.cameraPosition = cameraPosition;
+        this.nearClip = nearClip;
+        this.farClip = farClip;
+        //this is the reverse of how the rotations are worked out from the direction to the target in the animation timer
+        double pitch = Math.toRadians(xRotation);
+        double yaw = Math.toRadians(yRotation);
+        forward = new Point3D(Math.sin(yaw) * Math.cos(pitch), -Math.sin(pitch), Math.cos(yaw) * Math.cos(pitch));
+        right = forward.crossProduct(new Point3D(0, -1, 0));//y is down in JavaFX, so up is -y
+        if (right.magnitude() < 1e-6) {//looking straight up or down, any horizontal direction will do
+            right = new Point3D(1, 0, 0);
+        }
+        right = right.normalize();
+        up = right.crossProduct(forward).normalize();
+        double halfHeight = Math.toRadians(fieldOfView) / 2;
+        double halfWidth = Math.atan(Math.tan(halfHeight) * viewportWidth / Math.max(1, viewportHeight));
+        sinHalfHeight = Math.sin(halfHeight);
+        cosHalfHeight = Math.cos(halfHeight);
+        sinHalfWidth = Math.sin(halfWidth);
+        cosHalfWidth = Math.cos(halfWidth);
+        pixelsPerUnit = viewportHeight / (2 * Math.tan(halfHeight));
+    }
+
+    /**
+     * checks whether a bounding sphere can be seen, and counts it if it can't
+     * @param center the center of the sphere
+     * @param radius the radius of the sphere
+     */
+    public boolean isVisible(Point3D center, double radius) {
+        if (!enabled) {
+            return true;
+        }
+        boolean visible = testSphere(center, radius);
+        if (!visible) {
+            culled++;
+        }
+        return visible;
+    }
+
+    /**
+     * tests a sphere against the near, far, and four side planes of the frustum, and against the minimum size on screen
+     * @param center the center of the sphere
+     * @param radius the radius of the sphere
+     */
+    private boolean testSphere(Point3D center, double radius) {
+        Point3D relative = center.subtract(cameraPosition);
+        double z = relative.dotProduct(forward);//distance in front of the camera
+        if (z < nearClip - radius || z > farClip + radius) {
+            return false;
+        }
+        //the distance from a side plane through the camera is the sideways distance times cos of the half angle minus the forward distance times sin of it
+        double x = Math.abs(relative.dotProduct(right));
+        if (x * cosHalfWidth - z * sinHalfWidth > radius) {
+            return false;
+        }
+        double y = Math.abs(relative.dotProduct(up));
+        if (y * cosHalfHeight - z * sinHalfHeight > radius) {
+            return false;
+        }
+        return z <= radius || radius * pixelsPerUnit / z >= minPixelRadius;//if the camera is inside the sphere it's always visible
+    }
+
+    /**
+     * returns whether culling is on
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * turns culling on or off
+     * @param enabled whether culling should be on
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * returns how many amoebas were culled in the last tick
+     */
+    public int getLastTickCulled() {
+        return lastTickCulled;
+    }
+}
@@ -0,0 +1,401 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Everything that belongs to one game: the amoebas, the frame counter, the time scale, the difficulty and the solver. The window plays one game, the batch runner
+ * plays hundreds at once, so none of this can be static. Only the thread running the simulation should change the amoebas and the frame counter
+ */
+public class Game {
+    /** the game is still being played **/
+    public static final int PLAYING = 0;
+    /** every other amoeba is food, the player won **/
+    public static final int WON = 1;
+    /** every other amoeba is an enemy, the player lost **/
+    public static final int LOST = 2;
+
+    /** the amoebas every game starts with, the player first. Each row is the number of vertices, the radius, and the x, y and z of the center **/
+    public static final int[][] standardLayout = {
+            {200, 25, 0, -100, 0},
+            {60, 50, 0, -300, 400},
+            {60, 20, -400, -400, 400},
+            {60, 20, 200, -100, -200},
+            {60, 10, -200, -300, 200},
+            {60, 40, 280, -100, -100},
+            {60, 26, -350, -300, 350},
+            {60, 24, -200, -300, 120}
+    };
+
+    /** array of the amoebas in the game, the player is always first **/
+    private Amoeba[] amoebas;
+
+    /** this is a counter that counts up to 180 and resets **/
+    private int frameCounter = 0;
+
+    /** amoebas waiting to join the game at the start of the next tick, added from whichever thread loaded them **/
+    private final ConcurrentLinkedQueue<Amoeba> arriving = new ConcurrentLinkedQueue<>();
+
+    /** amoebas waiting to leave the game at the start of the next tick **/
+    private final ConcurrentLinkedQueue<Amoeba> leaving = new ConcurrentLinkedQueue<>();
+
+    /** the number of ticks played, unlike the frame counter it never resets **/
+    private long tick = 0;
+
+    /** the changes the amoebas made this tick, handled together at the end of it **/
+    private final GameEventQueue events = new GameEventQueue();
+
+    /** whether the player's hp changed last tick, so its colour can be put back when it stops **/
+    private boolean playerHealthChangedLastTick = false;
+
+    /** the number of amoebas that have died **/
+    private int deaths = 0;
+
+    /** a scalar for all velocities. It's applied before adding velocity to position. Used to speed up or slow down time **/
+    private volatile double timeScale;
+
+    /** a value that modifies the speed of enemies/food, between 0.2 and 2 **/
+    private volatile double difficulty = 1;
+
+    /** the solver used to move the vertices **/
+    private volatile PhysicsSolver physicsSolver;
+
+    /** the water the amoebas swim in, null for still water everywhere **/
+    private volatile FluidGrid fluidGrid;
+
+    /** whether the game is still being played, won, or lost. Only the first result counts **/
+    private volatile int outcome = PLAYING;
+
+    /** the random numbers the amoebas are built with, seeded so the batch runner can play the same games again **/
+    private final Random random = new Random();
+
+    /** splits connections that have grown more than half again as long as they started and merges ones that have shrunk to half **/
+    private final Remesher remesher = new Remesher(1.5, 0.5, 12, 600);
+
+    /** told every time the win or lose condition is met, null if nobody is listening **/
+    private GameOverListener gameOverListener;
+
+    /**
+     * Constructor for a game, the amoebas are added afterwards since they need the game to decide if they're food or enemies
+     * @param physicsSolver the solver used to move the vertices
+     * @param timeScale the starting time scale
+     */
+    public Game(PhysicsSolver physicsSolver, double timeScale) {
+        this.physicsSolver = physicsSolver;
+        this.timeScale = timeScale;
+    }
+
+    /**
+     * returns the amoebas in the game, the player is always first
+     */
+    public Amoeba[] getAmoebas() {
+        return amoebas;
+    }
+
+    /**
+     * gives the game an array for its amoebas. It's filled in afterwards, the player first
+     * @param amoebas the array of amoebas
+     */
+    public void setAmoebas(Amoeba[] amoebas) {
+        this.amoebas = amoebas;
+    }
+
+    /**
+     * asks for an amoeba to join the game. It's safe to call from any thread, the amoeba is only added to the array at the start of the next tick
+     * @param amoeba the amoeba to add
+     */
+    public void addAmoeba(Amoeba amoeba) {
+        arriving.add(amoeba);
+    }
+
+    /**
+     * asks for an amoeba to leave the game. It's safe to call from any thread, the amoeba is only taken out of the array at the start of the next tick
+     * @param amoeba the amoeba to remove, never the player
+     */
+    public void removeAmoeba(Amoeba amoeba) {
+        leaving.add(amoeba);
+    }
+
+    /**
+     * adds and removes the amoebas asked for since the last tick. A new array is made rather than changing the old one, so snapshots that hold the old
+     * one don't see it change. New amoebas are compared with the player as it is now, and the win and lose conditions are checked at the end of the tick.
+     * Called by the simulation at the start of every tick
+     */
+    public void applyAmoebaChanges() {
+        if (arriving.isEmpty() && leaving.isEmpty()) {
+            return;
+        }
+        List<Amoeba> changed = new ArrayList<>(Arrays.asList(amoebas));
+        for (Amoeba amoeba = leaving.poll(); amoeba != null; amoeba = leaving.poll()) {
+            if (amoeba != getPlayer() && changed.remove(amoeba)) {
+                events.record(GameEventQueue.LEFT, amoeba, 0);
+            }
+        }
+        double playerRadius = getPlayer().getRadius();
+        for (Amoeba amoeba = arriving.poll(); amoeba != null; amoeba = arriving.poll()) {
+            changed.add(amoeba);
+            int type = amoeba.getRadius() < playerRadius ? 1 : 2;//food if it's smaller than the player, otherwise an enemy
+            if (amoeba.getType() != type) {
+                amoeba.changeAmoebaType(type);
+            } else {
+                amoeba.updateSpeed();//it was built without looking at the player, so food gets kept slower than the player now
+            }
+            events.record(GameEventQueue.JOINED, amoeba, 0);
+        }
+        amoebas = changed.toArray(new Amoeba[0]);
+    }
+
+    /**
+     * returns the player amoeba
+     */
+    public Amoeba getPlayer() {
+        return amoebas[0];
+    }
+
+    /**
+     * returns the frame counter, which counts up to 180 and resets
+     */
+    public int getFrameCounter() {
+        return frameCounter;
+    }
+
+    /**
+     * moves the frame counter on by one frame, resetting it when it's above 180
+     */
+    public void advanceFrameCounter() {
+        tick++;
+        frameCounter++;
+        if (frameCounter > 180) {
+            frameCounter = 0;
+        }
+    }
+
+    /**
+     * returns the number of ticks played
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * returns the random numbers the amoebas are built with. Random is safe to share between threads, but only amoebas built in the same order get the same numbers
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+    /**
+     * seeds the random numbers the amoebas are built with, so a game built the same way afterwards comes out the same
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     * returns the remesher that keeps the connections of this game's amoebas near the length they started at
+     */
+    public Remesher getRemesher() {
+        return remesher;
+    }
+
+    /**
+     * returns the queue the amoebas record their changes in
+     */
+    public GameEventQueue getEvents() {
+        return events;
+    }
+
+    /**
+     * returns the number of amoebas that have died
+     */
+    public int getDeaths() {
+        return deaths;
+    }
+
+    /**
+     * returns the time scale
+     */
+    public double getTimeScale() {
+        return timeScale;
+    }
+
+    /**
+     * changes the time scale
+     * @param timeScale the new time scale
+     */
+    public void setTimeScale(double timeScale) {
+        this.timeScale = timeScale;
+    }
+
+    /**
+     * returns the difficulty
+     */
+    public double getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * changes the difficulty
+     * @param difficulty the new difficulty, between 0.2 and 2
+     */
+    public void setDifficulty(double difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * returns the water the amoebas swim in, null if the water is still everywhere
+     */
+    public FluidGrid getFluidGrid() {
+        return fluidGrid;
+    }
+
+    /**
+     * changes the water the amoebas swim in
+     * @param fluidGrid the new grid, null for still water everywhere
+     */
+    public void setFluidGrid(FluidGrid fluidGrid) {
+        this.fluidGrid = fluidGrid;
+    }
+
+    /**
+     * returns the solver used to move the vertices
+     */
+    public PhysicsSolver getPhysicsSolver() {
+        return physicsSolver;
+    }
+
+    /**
+     * changes the solver used to move the vertices
+     * @param physicsSolver the new solver
+     */
+    public void setPhysicsSolver(PhysicsSolver physicsSolver) {
+        this.physicsSolver = physicsSolver;
+    }
+
+    /**
+     * returns whether the game is still being played, won, or lost
+     */
+    public int getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * changes who gets told when the win or lose condition is met
+     * @param gameOverListener the listener, null for nobody
+     */
+    public void setGameOverListener(GameOverListener gameOverListener) {
+        this.gameOverListener = gameOverListener;
+    }
+
+    /**
+     * handles every change recorded during the tick, called once at the end of it. Hp changes reclassify the amoebas once however many there were, type changes
+     * and amoebas joining or leaving check the win and lose conditions once, and the listener hears about the game ending once. Reacting can record more changes, like a reclassified amoeba
+     * changing type, so it keeps going until nothing new is recorded
+     */
+    public void dispatchEvents() {
+        boolean playerHealthChanged = false;
+        double playerHpChange = 0;
+        List<GameEventQueue.Entry> batch = events.drain();
+        while (!batch.isEmpty()) {
+            boolean sizesChanged = false;
+            Amoeba checkCause = null;
+            int result = PLAYING;
+            for (GameEventQueue.Entry entry : batch) {
+                switch (entry.kind()) {
+                    case GameEventQueue.HP_CHANGED -> {
+                        sizesChanged = true;
+                        if (entry.amoeba() == getPlayer()) {
+                            playerHealthChanged = true;
+                            playerHpChange += entry.amount();
+                        }
+                    }
+                    case GameEventQueue.TYPE_CHANGED, GameEventQueue.JOINED, GameEventQueue.LEFT -> checkCause = entry.amoeba();//the mix of food and enemies changed
+                    case GameEventQueue.DIED -> deaths++;
+                    case GameEventQueue.GAME_OVER -> result = (int) entry.amount();
+                    default -> throw new IllegalStateException("Unknown event " + entry.kind());
+                }
+            }
+            if (sizesChanged) {
+                reclassify();
+            }
+            if (checkCause != null) {
+                checkIfWinOrLose(checkCause);
+            }
+            if (result != PLAYING) {
+                gameOver(result == WON);
+            }
+            batch = events.drain();
+        }
+        //the player flashes green or red while its health is changing, and goes back to blue once it stops
+        if (playerHealthChanged) {
+            getPlayer().showHealthChange(playerHpChange, tick);
+        } else if (playerHealthChangedLastTick) {
+            getPlayer().stopShowingHealthChange();
+        }
+        playerHealthChangedLastTick = playerHealthChanged;
+    }
+
+    /**
+     * compares the size of every amoeba with the player, and if the size doesn't match the type (ie it's smaller but is an enemy) then changes the type
+     */
+    private void reclassify() {
+        Amoeba player = getPlayer();
+        for (Amoeba amoeba : amoebas) {
+            if (amoeba == player) {
+                continue;
+            }
+            if (amoeba.getType() == 2 && amoeba.getRadius() < player.getRadius()) { //if its radius is less than the player, but it's an enemy
+                amoeba.changeAmoebaType(1);//turn it into food
+            } else if (amoeba.getType() == 1 && amoeba.getRadius() > player.getRadius()) { //if its radius is greater than the player, but it's food
+                amoeba.changeAmoebaType(2);//turn it into an enemy
+            }
+        }
+    }
+
+    /**
+     * Checks if players has won or lost by seeing if all amoebas are red or green, and records the result
+     * @param cause the amoeba whose type change caused the check
+     */
+    private void checkIfWinOrLose(Amoeba cause) {
+        //if all amoebas are enemies, you lose. if all amoebas are food, you're the biggest, and you win
+        GameEvents.WinLoseCheck event = new GameEvents.WinLoseCheck();
+        event.begin();
+        int food = 0;
+        int enemies = 0;
+        for (Amoeba amoeba : amoebas) {
+            if (amoeba.getType() == 1) {
+                food++;
+            }
+            if (amoeba.getType() == 2) {
+                enemies++;
+            }
+        }
+        int result = enemies == 0 ? WON : food == 0 ? LOST : PLAYING;
+        if (result != PLAYING) {
+            events.record(GameEventQueue.GAME_OVER, null, result);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.amoebaId = cause.getId();
+            event.food = food;
+            event.enemies = enemies;
+            event.result = result;
+            event.commit();
+        }
+    }
+
+    /**
+     * called when the win or lose condition is met. The first result is kept, the listener is told every time
+     * @param playerWon whether every other amoeba is food
+     */
+    private void gameOver(boolean playerWon) {
+        if (outcome == PLAYING) {
+            outcome = playerWon ? WON : LOST;
+        }
+        if (gameOverListener != null) {
+            gameOverListener.gameOver(playerWon);
+        }
+    }
+}
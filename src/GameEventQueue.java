@@ -0,0 +1,57 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the state changes that happen during a tick, so the game can react to them once afterwards instead of checking every amoeba every frame.
+ * The amoebas record what changed, and the game drains the queue at the end of the tick and handles everything together, so ten hp changes in one tick
+ * only reclassify the amoebas once
+ */
+public class GameEventQueue {
+    /** an amoeba grew or shrank, the amount is how much hp was added **/
+    public static final int HP_CHANGED = 0;
+    /** an amoeba changed between food and enemy, the amount is the new type **/
+    public static final int TYPE_CHANGED = 1;
+    /** an amoeba shrank too small and died **/
+    public static final int DIED = 2;
+    /** the win or lose condition was met, the amount is Game.WON or Game.LOST **/
+    public static final int GAME_OVER = 3;
+    /** an amoeba joined the game, like one from a chunk that was loaded **/
+    public static final int JOINED = 4;
+    /** an amoeba left the game, like one whose chunk was unloaded **/
+    public static final int LEFT = 5;
+
+    /**
+     * one thing that changed
+     * @param kind what changed, one of the constants above
+     * @param amoeba the amoeba it happened to, null for game over
+     * @param amount how much it changed by, what it means depends on the kind
+     */
+    public record Entry(int kind, Amoeba amoeba, double amount) {
+    }
+
+    /** the changes recorded since the queue was last drained **/
+    private List<Entry> entries = new ArrayList<>();
+
+    /**
+     * records a change. The player updates first on its own, but the queue is locked anyway so an amoeba updated in parallel can record things safely
+     * @param kind what changed
+     * @param amoeba the amoeba it happened to
+     * @param amount how much it changed by
+     */
+    public synchronized void record(int kind, Amoeba amoeba, double amount) {
+        entries.add(new Entry(kind, amoeba, amount));
+    }
+
+    /**
+     * takes every change recorded so far, leaving the queue empty. Anything recorded while the changes are being handled goes into the next batch
+     * @return the changes, in the order they happened
+     */
+    public synchronized List<Entry> drain() {
+        if (entries.isEmpty()) {
+            return List.of();
+        }
+        List<Entry> drained = entries;
+        entries = new ArrayList<>();
+        return drained;
+    }
+}
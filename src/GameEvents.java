@@ -0,0 +1,182 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Java Flight Recorder events the game emits, so recordings show what the game was doing rather than anonymous handle and applyForces frames.
+ * Start a recording with -XX:StartFlightRecording=filename=game.jfr and look under Amoeba Wars in JDK Mission Control. Every event can be turned on and off in the
+ * recording settings. When an event is off, or nothing is recording, creating and committing it costs next to nothing, and anything expensive to count is only
+ * counted when shouldCommit says the event will be kept.
+ * Amoebas are identified by their ID, which is unique across every game in the process, so events from the batch runner don't get mixed up
+ */
+public final class GameEvents {
+    /**
+     * only a holder for the event classes
+     */
+    private GameEvents() {
+    }
+
+    /**
+     * one tick of the simulation, from the frame counter moving on to the snapshot being taken
+     */
+    @Name("amoebawars.Tick")
+    @Label("Simulation Tick")
+    @Category({"Amoeba Wars", "Simulation"})
+    @Description("One tick of the simulation")
+    @StackTrace(false)
+    public static class Tick extends Event {
+        /** the number of the tick **/
+        @Label("Tick")
+        public long tick;
+        /** the frame counter after the tick **/
+        @Label("Frame Counter")
+        public int frameCounter;
+        /** the number of amoebas, dead or alive **/
+        @Label("Amoebas")
+        public int amoebas;
+        /** the number of amoebas still alive **/
+        @Label("Alive Amoebas")
+        public int aliveAmoebas;
+        /** the number of vertices in every amoeba together **/
+        @Label("Vertices")
+        public int vertices;
+    }
+
+    /**
+     * one amoeba being updated, its movement, its collisions, and its solver step
+     */
+    @Name("amoebawars.AmoebaUpdate")
+    @Label("Amoeba Update")
+    @Category({"Amoeba Wars", "Simulation"})
+    @Description("One amoeba moving, colliding and being solved for one tick")
+    @StackTrace(false)
+    public static class AmoebaUpdate extends Event {
+        /** the ID of the amoeba **/
+        @Label("Amoeba ID")
+        public int amoebaId;
+        /** 0 for player, 1 for food, 2 for enemy **/
+        @Label("Type")
+        public int type;
+        /** the number of vertices in the amoeba **/
+        @Label("Vertices")
+        public int vertices;
+        /** the hp after the update **/
+        @Label("HP")
+        public double hp;
+    }
+
+    /**
+     * an amoeba turning from food into an enemy or the other way around
+     */
+    @Name("amoebawars.TypeChange")
+    @Label("Amoeba Type Change")
+    @Category({"Amoeba Wars", "Gameplay"})
+    @Description("An amoeba changed between player, food and enemy")
+    @StackTrace(false)
+    public static class TypeChange extends Event {
+        /** the ID of the amoeba **/
+        @Label("Amoeba ID")
+        public int amoebaId;
+        /** the type before **/
+        @Label("Old Type")
+        public int oldType;
+        /** the type after **/
+        @Label("New Type")
+        public int newType;
+        /** the radius of the amoeba **/
+        @Label("Radius")
+        public double radius;
+    }
+
+    /**
+     * an amoeba gaining or losing hp
+     */
+    @Name("amoebawars.HpChange")
+    @Label("Amoeba HP Change")
+    @Category({"Amoeba Wars", "Gameplay"})
+    @Description("An amoeba grew or shrank")
+    @StackTrace(false)
+    public static class HpChange extends Event {
+        /** the ID of the amoeba **/
+        @Label("Amoeba ID")
+        public int amoebaId;
+        /** the hp before **/
+        @Label("Old HP")
+        public double oldHp;
+        /** the hp after **/
+        @Label("New HP")
+        public double newHp;
+        /** how much was asked to be added, the hp doesn't change if the amoeba is already at the smallest size **/
+        @Label("Amount")
+        public double amount;
+    }
+
+    /**
+     * an amoeba shrinking too small and dying
+     */
+    @Name("amoebawars.Death")
+    @Label("Amoeba Death")
+    @Category({"Amoeba Wars", "Gameplay"})
+    @Description("An amoeba shrank below the smallest size and died")
+    @StackTrace(false)
+    public static class Death extends Event {
+        /** the ID of the amoeba **/
+        @Label("Amoeba ID")
+        public int amoebaId;
+        /** the type when it died **/
+        @Label("Type")
+        public int type;
+        /** the number of vertices it had **/
+        @Label("Vertices")
+        public int vertices;
+    }
+
+    /**
+     * a check of whether every other amoeba is food or every other amoeba is an enemy
+     */
+    @Name("amoebawars.WinLoseCheck")
+    @Label("Win/Lose Check")
+    @Category({"Amoeba Wars", "Gameplay"})
+    @Description("Checked whether the player has won or lost")
+    @StackTrace(false)
+    public static class WinLoseCheck extends Event {
+        /** the ID of the amoeba whose type change caused the check **/
+        @Label("Amoeba ID")
+        public int amoebaId;
+        /** the number of food amoebas **/
+        @Label("Food")
+        public int food;
+        /** the number of enemy amoebas **/
+        @Label("Enemies")
+        public int enemies;
+        /** 0 still playing, 1 won, 2 lost, the same codes as Game **/
+        @Label("Result")
+        public int result;
+    }
+
+    /**
+     * a snapshot being pushed to the scene graph on the JavaFX thread
+     */
+    @Name("amoebawars.SceneSync")
+    @Label("Scene Sync")
+    @Category({"Amoeba Wars", "Rendering"})
+    @Description("A snapshot of the simulation pushed to the scene graph")
+    @StackTrace(false)
+    public static class SceneSync extends Event {
+        /** the tick the snapshot was taken after **/
+        @Label("Tick")
+        public long tick;
+        /** the number of amoebas pushed **/
+        @Label("Amoebas")
+        public int amoebas;
+        /** the number of nodes checked for movement **/
+        @Label("Nodes Checked")
+        public int nodesChecked;
+        /** the number of nodes changed **/
+        @Label("Nodes Written")
+        public int nodesWritten;
+    }
+}
@@ -0,0 +1,228 @@
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.paint.PhongMaterial;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters for one running game, published over JMX as amoebawars:type=GameMetrics. The simulation and the JavaFX thread only ever increment or set
+ * atomic counters, which never blocks. A background thread works out the rates once a second, and JMX reads everything on its own threads. Each simulation
+ * records into its own metrics, and only the window makes any, so the games the batch runner plays at once don't write over each other. The material and
+ * cylinder height counts are shared by the whole process, like the amoeba IDs, since materials and cylinders don't know which game they belong to
+ */
+public final class GameMetrics implements GameMetricsMBean {
+
+    /** the number of ticks run **/
+    private final AtomicLong ticks = new AtomicLong();
+    /** how long the last tick took in nanoseconds **/
+    private final AtomicLong tickNanos = new AtomicLong();
+    /** the time between the last two frames in nanoseconds **/
+    private final AtomicLong frameNanos = new AtomicLong();
+    /** the timestamp of the last frame, 0 before the first **/
+    private final AtomicLong lastFrame = new AtomicLong();
+    /** the number of live amoebas after the last tick **/
+    private final AtomicInteger liveAmoebas = new AtomicInteger();
+    /** the number of vertices after the last tick **/
+    private final AtomicInteger vertices = new AtomicInteger();
+    /** the number of nodes under the root group when they were last counted **/
+    private final AtomicInteger rootNodes = new AtomicInteger();
+    /** the number of PhongMaterials created by the whole process **/
+    private static final AtomicLong phongMaterials = new AtomicLong();
+    /** the number of cylinder heights changed in redrawLine by the whole process **/
+    private static final AtomicLong setHeightCalls = new AtomicLong();
+    /** the number of solver steps in the last tick **/
+    private final AtomicInteger substepsLastTick = new AtomicInteger();
+    /** the number of solver steps taken **/
+    private final AtomicLong substeps = new AtomicLong();
+
+    /** the ticks per second worked out by the sampler **/
+    private volatile double ticksPerSecond;
+    /** the allocation rate worked out by the sampler **/
+    private volatile double allocationMegabytesPerSecond;
+
+    /** the sampler working out the rates, null until started **/
+    private ScheduledExecutorService sampler;
+
+    /**
+     * registers the counters with JMX and starts working out the rates once a second. Does nothing the second time
+     */
+    public synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("amoebawars:type=GameMetrics"));
+        } catch (JMException e) {//the game runs fine without them
+            System.err.println("Metrics not published: " + e.getMessage());
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics");
+            thread.setDaemon(true);//don't keep the game open after the window closes
+            return thread;
+        });
+        long[] last = {System.nanoTime(), ticks.get(), allocatedBytes()};
+        sampler.scheduleAtFixedRate(() -> {
+            long now = System.nanoTime();
+            long tickCount = ticks.get();
+            long allocated = allocatedBytes();
+            double seconds = (now - last[0]) / 1e9;
+            ticksPerSecond = (tickCount - last[1]) / seconds;
+            allocationMegabytesPerSecond = Math.max(0, allocated - last[2]) / 1e6 / seconds;//threads that finished take their bytes with them, so it can go backwards
+            last[0] = now;
+            last[1] = tickCount;
+            last[2] = allocated;
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * makes a new material and counts it, use this instead of new PhongMaterial so the count is right
+     */
+    public static PhongMaterial newMaterial() {
+        phongMaterials.incrementAndGet();
+        return new PhongMaterial();
+    }
+
+    /**
+     * counts a cylinder height being changed in redrawLine
+     */
+    public static void countSetHeight() {
+        setHeightCalls.incrementAndGet();
+    }
+
+    /**
+     * records a finished tick, called by the simulation
+     * @param nanos how long it took
+     * @param amoebas the amoebas after the tick
+     * @param steps the number of solver steps taken
+     */
+    public void recordTick(long nanos, Amoeba[] amoebas, int steps) {
+        int alive = 0;
+        int vertexCount = 0;
+        for (Amoeba amoeba : amoebas) {
+            if (amoeba.isAlive()) {
+                alive++;
+            }
+            vertexCount += amoeba.getVertices().length;
+        }
+        ticks.incrementAndGet();
+        tickNanos.set(nanos);
+        liveAmoebas.set(alive);
+        vertices.set(vertexCount);
+        substepsLastTick.set(steps);
+        substeps.addAndGet(steps);
+    }
+
+    /**
+     * records a frame being drawn, called by the JavaFX thread
+     * @param now the timestamp of the frame
+     */
+    public void recordFrame(long now) {
+        long previous = lastFrame.getAndSet(now);
+        if (previous != 0) {
+            frameNanos.set(now - previous);
+        }
+    }
+
+    /**
+     * counts every node under a group, only call it on the JavaFX thread. Walking the whole scene isn't free, so the game only does it about once a second
+     * @param root the group to count under
+     */
+    public void countNodes(Parent root) {
+        rootNodes.set(countChildren(root));
+    }
+
+    /**
+     * counts the nodes under a parent, not counting the parent
+     * @param parent the parent
+     */
+    private static int countChildren(Parent parent) {
+        int count = 0;
+        for (Node child : parent.getChildrenUnmodifiable()) {
+            count++;
+            if (child instanceof Parent childParent) {
+                count += countChildren(childParent);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * returns the total number of bytes allocated by every live thread
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean sunThreadBean && sunThreadBean.isThreadAllocatedMemorySupported()) {
+            return Arrays.stream(sunThreadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())).filter(bytes -> bytes > 0).sum();
+        }
+        return 0;
+    }
+
+    @Override
+    public double getTicksPerSecond() {
+        return ticksPerSecond;
+    }
+
+    @Override
+    public double getTickMillis() {
+        return tickNanos.get() / 1e6;
+    }
+
+    @Override
+    public double getFrameMillis() {
+        return frameNanos.get() / 1e6;
+    }
+
+    @Override
+    public long getTicks() {
+        return ticks.get();
+    }
+
+    @Override
+    public int getLiveAmoebas() {
+        return liveAmoebas.get();
+    }
+
+    @Override
+    public int getVertices() {
+        return vertices.get();
+    }
+
+    @Override
+    public int getRootNodes() {
+        return rootNodes.get();
+    }
+
+    @Override
+    public double getAllocationMegabytesPerSecond() {
+        return allocationMegabytesPerSecond;
+    }
+
+    @Override
+    public long getPhongMaterialsCreated() {
+        return phongMaterials.get();
+    }
+
+    @Override
+    public long getSetHeightCalls() {
+        return setHeightCalls.get();
+    }
+
+    @Override
+    public int getSubstepsLastTick() {
+        return substepsLastTick.get();
+    }
+
+    @Override
+    public long getSubsteps() {
+        return substeps.get();
+    }
+}
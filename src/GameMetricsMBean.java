@@ -0,0 +1,65 @@
+/**
+ * The live numbers the game publishes over JMX, so a running game can be watched in JConsole or JDK Mission Control without a profiler attached.
+ * Every getter only reads counters the game has already updated, so reading them never waits for the simulation or the JavaFX thread
+ */
+public interface GameMetricsMBean {
+    /**
+     * returns the number of ticks run in the last second
+     */
+    double getTicksPerSecond();
+
+    /**
+     * returns how long the last tick took in milliseconds
+     */
+    double getTickMillis();
+
+    /**
+     * returns the time between the last two frames drawn in milliseconds
+     */
+    double getFrameMillis();
+
+    /**
+     * returns the number of ticks run since the game started
+     */
+    long getTicks();
+
+    /**
+     * returns the number of amoebas still alive after the last tick
+     */
+    int getLiveAmoebas();
+
+    /**
+     * returns the number of vertices in every amoeba after the last tick
+     */
+    int getVertices();
+
+    /**
+     * returns the number of nodes under the root group, counted about once a second
+     */
+    int getRootNodes();
+
+    /**
+     * returns the number of megabytes allocated per second over the last second, by every thread
+     */
+    double getAllocationMegabytesPerSecond();
+
+    /**
+     * returns the number of PhongMaterials created since the game started
+     */
+    long getPhongMaterialsCreated();
+
+    /**
+     * returns the number of times redrawLine has changed the height of a cylinder since the game started
+     */
+    long getSetHeightCalls();
+
+    /**
+     * returns the number of solver steps taken by every amoeba in the last tick, more than the number of amoebas when adaptive substepping splits them
+     */
+    int getSubstepsLastTick();
+
+    /**
+     * returns the number of solver steps taken since the game started
+     */
+    long getSubsteps();
+}
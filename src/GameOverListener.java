@@ -0,0 +1,11 @@
+/**
+ * Told when the player wins or loses a game. It can be called from the simulation thread
+ */
+public interface GameOverListener {
+    /**
+     * called every time the win or lose condition is met
+     *
+     * @param playerWon true if every other amoeba is food, false if every other amoeba is an enemy
+     */
+    void gameOver(boolean playerWon);
+}
@@ -0,0 +1,19 @@
+/**
+ * Moves the vertices of an amoeba forward in time. There's more than one way to do this, so the game can switch between them while it's running
+ */
+public interface PhysicsSolver {
+    /**
+     * moves every vertex of the amoeba forward by one step
+     *
+     * @param amoeba        the amoeba whose vertices should be moved
+     * @param timeStep      how far forward in time to move, normally the time scale
+     * @param frameFraction the fraction of a frame this step covers, 1 unless the frame has been split into substeps
+     */
+    void step(Amoeba amoeba, double timeStep, double frameFraction);
+
+    /**
+     * called once at the end of every tick, for solvers that keep track of how much work they did
+     */
+    default void endTick() {
+    }
+}
@@ -0,0 +1,66 @@
+import javafx.geometry.Point3D;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the keyboard and camera input from the JavaFX thread to whichever thread runs the simulation. The keys are bits in an atomic integer and the camera
+ * direction is an immutable point, so neither side ever has to wait for the other
+ */
+public class PlayerInput {
+    /** bit for moving forward **/
+    public static final int FORWARD = 1;
+    /** bit for moving backward **/
+    public static final int BACKWARD = 1 << 1;
+    /** bit for moving left **/
+    public static final int LEFT = 1 << 2;
+    /** bit for moving right **/
+    public static final int RIGHT = 1 << 3;
+    /** bit for moving up **/
+    public static final int UP = 1 << 4;
+    /** bit for moving down **/
+    public static final int DOWN = 1 << 5;
+
+    /** one bit for every movement key that is currently held down **/
+    private final AtomicInteger keys = new AtomicInteger();
+
+    /** the normalized direction from the camera to the player, movement is relative to this **/
+    private volatile Point3D cameraDirection = new Point3D(0, 0, 1);
+
+    /**
+     * marks a movement key as held down
+     * @param key the bit for the key
+     */
+    public void press(int key) {
+        keys.getAndUpdate(current -> current | key);
+    }
+
+    /**
+     * marks a movement key as released
+     * @param key the bit for the key
+     */
+    public void release(int key) {
+        keys.getAndUpdate(current -> current & ~key);
+    }
+
+    /**
+     * returns the bits for every movement key currently held down, read this once per tick so all the keys come from the same moment
+     */
+    public int getKeys() {
+        return keys.get();
+    }
+
+    /**
+     * returns the direction from the camera to the player
+     */
+    public Point3D getCameraDirection() {
+        return cameraDirection;
+    }
+
+    /**
+     * changes the direction from the camera to the player
+     * @param cameraDirection the normalized direction
+     */
+    public void setCameraDirection(Point3D cameraDirection) {
+        this.cameraDirection = cameraDirection;
+    }
+}
@@ -0,0 +1,189 @@
+import javafx.geometry.Point3D;
+
+/**
+ * A Verlet style position based dynamics solver. Instead of adding spring forces to the velocity, every vertex is moved to where its velocity would take it,
+ * then the distances to its connections, its position relative to the center, and the floor are corrected directly. Since the corrections never overshoot, it stays
+ * stable at large time scales and with all six connections active.
+ * <p>
+ * The distance constraints come from the amoeba's constraint graph, so each connection is solved once. The edges are solved one colour at a time, since no
+ * two edges of a colour share a vertex each vertex is moved at most once per colour, which spreads the corrections evenly over the amoeba rather than
+ * letting the first edges in the list win. Amoebas are already stepped on several threads by the simulation, so each amoeba is solved on one
+ */
+public class PositionBasedSolver implements PhysicsSolver {
+    /**
+     * how many times the constraints are corrected each step, more iterations make the amoeba stiffer. The JavaFX thread changes it while the simulation thread is stepping
+     */
+    private volatile int iterations;
+
+    /**
+     * how much of the error in the distance between two connected vertices is corrected in one step, between 0 and 1
+     */
+    private final double connectionStiffness = 0.9;
+
+    /**
+     * how much of the difference between a vertex and its position relative to the center is corrected per unit of time, between 0 and 1
+     */
+    private final double shapeStiffness = 0.02;
+
+    /**
+     * the fraction of the pull towards the shape that pulls the center back the other way. The shape constraints pull about 30 times harder than the center
+     * springs of the spring solver, which give a fifth back to the center, so this gives back a fifth of a thirtieth to keep the amoebas moving the same
+     */
+    private final double shapeReaction = 0.006;
+
+    /**
+     * velocity is multiplied by this number every unit of time, acting as drag
+     */
+    private final double dampening = 0.960;
+
+    /**
+     * Constructor for the solver
+     *
+     * @param iterations how many times the constraints are corrected each step
+     */
+    public PositionBasedSolver(int iterations) {
+        setIterations(iterations);
+    }
+
+    /**
+     * returns how many times the constraints are corrected each step
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * changes how many times the constraints are corrected each step, clamped to at least 1
+     *
+     * @param iterations the new number of iterations
+     */
+    public void setIterations(int iterations) {
+        this.iterations = Math.max(1, iterations);
+    }
+
+    /**
+     * moves every vertex to its predicted position, corrects the constraints, then works out the new velocity from how far each vertex actually moved. The nodes are moved later by the render sync.
+     * The positions are copied into arrays for the duration of the step, so the constraints don't create a new point for every correction
+     *
+     * @param amoeba        the amoeba whose vertices should be moved
+     * @param timeStep      how far forward in time to move, normally the time scale
+     * @param frameFraction not needed here, everything is already scaled by the time step
+     */
+    @Override
+    public void step(Amoeba amoeba, double timeStep, double frameFraction) {
+        if (timeStep <= 0) {
+            return;
+        }
+        Vertex[] vertices = amoeba.getVertices();
+        ConstraintGraph graph = amoeba.getConstraintGraph();
+        int count = vertices.length;
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double[] z = new double[count];
+        double[] goalX = new double[count];
+        double[] goalY = new double[count];
+        double[] goalZ = new double[count];
+        int iterations = this.iterations;//read once, so the stiffness and the loop agree if it changes during the step
+        double drag = Math.pow(dampening, timeStep);// dampening is per unit of time, so raise it to the power of the time step
+        Point3D center = amoeba.getTargetCenter();
+        Point3D current = amoeba.getCurrent();
+        for (int i = 0; i < count; i++) { // predict where every vertex will be, and where it should be relative to the center
+            Vertex vertex = vertices[i];
+            Point3D velocity = current.add(vertex.getVelocity().subtract(0, amoeba.getGravity() * timeStep, 0).subtract(current).multiply(drag));//drag it towards moving with the water
+            x[i] = vertex.getLocation().getX() + velocity.getX() * timeStep;
+            y[i] = vertex.getLocation().getY() + velocity.getY() * timeStep;
+            z[i] = vertex.getLocation().getZ() + velocity.getZ() * timeStep;
+            Point3D goal = center.add(vertex.getTargetDeltaFromCenter());
+            goalX[i] = goal.getX();
+            goalY[i] = goal.getY();
+            goalZ[i] = goal.getZ();
+        }
+        // stiffness values are for a whole step, this converts them to per iteration values so changing the number of iterations doesn't change how stiff the amoeba is
+        double connectionStiffnessPerIteration = 1 - Math.pow(1 - connectionStiffness, 1.0 / iterations);
+        double shapeStiffnessPerIteration = 1 - Math.pow(1 - shapeStiffness, timeStep / iterations);
+        double scale = vertices[0].getScaleFactor();// every vertex of an amoeba is scaled by the same amount
+        double[] shapeCorrection = new double[3];// how far the shape constraints moved the vertices altogether
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int colour = 0; colour < graph.getNumberOfColours(); colour++) {
+                int end = graph.getColourEnd(colour);
+                for (int edge = graph.getColourStart(colour); edge < end; edge++) {
+                    solveEdge(graph, edge, x, y, z, scale, connectionStiffnessPerIteration);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                solveShape(i, x, y, z, goalX, goalY, goalZ, shapeStiffnessPerIteration, shapeCorrection);
+            }
+        }
+        //the vertices pulled towards the center pull the center towards them, like the center spring in the spring solver
+        double reaction = -shapeReaction / timeStep;// a move over the step is a velocity of move / timeStep
+        amoeba.addVelocity(new Point3D(shapeCorrection[0] * reaction, shapeCorrection[1] * reaction, shapeCorrection[2] * reaction));
+        for (int i = 0; i < count; i++) {
+            Vertex vertex = vertices[i];
+            Point3D location = new Point3D(x[i], y[i], z[i]);
+            Point3D velocity = location.subtract(vertex.getLocation()).multiply(1 / timeStep);
+            if (SweptCollision.isInFloor(location)) { //if this vert hits the ground bounce it off where its path hit, and push the amoeba center up
+                location = SweptCollision.bounceOffFloor(vertex.getLocation(), location);
+                amoeba.addVelocity(new Point3D(0, -Math.abs(velocity.getY()) * 0.6, 0));
+                velocity = new Point3D(velocity.getX(), -Math.abs(velocity.getY()), velocity.getZ()); // bounce
+            }
+            vertex.setLocation(location);
+            vertex.setVelocity(velocity);
+        }
+    }
+
+    /**
+     * moves the two vertices of an edge towards or away from each other so the distance between them gets closer to the rest length
+     *
+     * @param graph     the graph the edge belongs to
+     * @param edge      the index of the edge
+     * @param x         the x positions of the vertices
+     * @param y         the y positions of the vertices
+     * @param z         the z positions of the vertices
+     * @param scale     the factor the amoeba has been scaled by
+     * @param stiffness how much of the error to correct
+     */
+    private static void solveEdge(ConstraintGraph graph, int edge, double[] x, double[] y, double[] z, double scale, double stiffness) {
+        int a = graph.getEdgeFrom(edge);
+        int b = graph.getEdgeTo(edge);
+        double deltaX = x[b] - x[a];
+        double deltaY = y[b] - y[a];
+        double deltaZ = z[b] - z[a];
+        double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY + deltaZ * deltaZ);
+        if (distance == 0) {
+            return;
+        }
+        // split the correction evenly between the two vertices
+        double correction = (distance - graph.getRestLength(edge) * scale) / distance * 0.5 * stiffness;
+        x[a] += deltaX * correction;
+        y[a] += deltaY * correction;
+        z[a] += deltaZ * correction;
+        x[b] -= deltaX * correction;
+        y[b] -= deltaY * correction;
+        z[b] -= deltaZ * correction;
+    }
+
+    /**
+     * moves a vertex towards where it should be relative to the center of the amoeba, this stops the vertices from sliding around the surface
+     *
+     * @param i         the index of the vertex
+     * @param x         the x positions of the vertices
+     * @param y         the y positions of the vertices
+     * @param z         the z positions of the vertices
+     * @param goalX     the x positions the vertices should be at
+     * @param goalY     the y positions the vertices should be at
+     * @param goalZ     the z positions the vertices should be at
+     * @param stiffness how much of the difference to correct
+     * @param correction the x, y and z of every correction so far, this one is added to it
+     */
+    private static void solveShape(int i, double[] x, double[] y, double[] z, double[] goalX, double[] goalY, double[] goalZ, double stiffness, double[] correction) {
+        double moveX = (goalX[i] - x[i]) * stiffness;
+        double moveY = (goalY[i] - y[i]) * stiffness;
+        double moveZ = (goalZ[i] - z[i]) * stiffness;
+        x[i] += moveX;
+        y[i] += moveY;
+        z[i] += moveZ;
+        correction[0] += moveX;
+        correction[1] += moveY;
+        correction[2] += moveZ;
+    }
+}
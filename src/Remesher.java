@@ -0,0 +1,333 @@
+import javafx.geometry.Point3D;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the vertices of an amoeba evenly spaced as it grows and shrinks. Resizing only scales the distances between the vertices, so a big amoeba ends up with long
+ * sparse connections and a small one with short crowded ones. The remesher splits connections that have grown too long by putting a new vertex in the middle, and
+ * merges the two ends of connections that have shrunk too short, so the number of vertices follows the surface area of the amoeba.
+ * Every change only rewires the vertices next to it. A pass never touches two changes that share a neighbour, so the changes don't get in each other's way
+ */
+public class Remesher {
+    /** connections longer than the target length times this are split **/
+    private final double splitRatio;
+
+    /** connections shorter than the target length times this are collapsed **/
+    private final double collapseRatio;
+
+    /** amoebas aren't collapsed below this many vertices **/
+    private final int minimumVertices;
+
+    /** amoebas aren't split above this many vertices **/
+    private final int maximumVertices;
+
+    /** whether the remesher is switched on **/
+    private volatile boolean enabled = true;
+
+    /** the total number of connections split and collapsed since the game started **/
+    private final AtomicLong splits = new AtomicLong();
+    private final AtomicLong collapses = new AtomicLong();
+
+    /**
+     * Constructor for the remesher
+     * @param splitRatio connections longer than the target length times this are split
+     * @param collapseRatio connections shorter than the target length times this are collapsed
+     * @param minimumVertices amoebas aren't collapsed below this many vertices
+     * @param maximumVertices amoebas aren't split above this many vertices
+     */
+    public Remesher(double splitRatio, double collapseRatio, int minimumVertices, int maximumVertices) {
+        this.splitRatio = splitRatio;
+        this.collapseRatio = collapseRatio;
+        this.minimumVertices = minimumVertices;
+        this.maximumVertices = maximumVertices;
+    }
+
+    /**
+     * does one pass over the connections of an amoeba, splitting the ones that are too long and collapsing the ones that are too short
+     * @param amoeba the amoeba to remesh
+     * @return whether anything was changed, if it was there may be more to do next pass
+     */
+    public boolean remesh(Amoeba amoeba) {
+        if (!enabled) {
+            return false;
+        }
+        Vertex[] vertices = amoeba.getVertices();
+        ConstraintGraph graph = amoeba.getConstraintGraph();
+        double targetEdgeLength = amoeba.getTargetEdgeLength();
+        boolean[] locked = new boolean[vertices.length];//vertices that have been changed or rewired this pass
+        boolean[] removed = new boolean[vertices.length];
+        List<Vertex> added = new ArrayList<>();
+        int numberOfVertices = vertices.length;
+        int numberOfRemoved = 0;
+        for (Vertex vertex : vertices) {
+            if (locked[vertex.getVertexID()]) {
+                continue;
+            }
+            for (int slot = 0; slot < AmoebaTemplate.numberOfClosestConnections; slot++) {//only the closest connections are surface edges, the random ones cross the amoeba
+                Vertex other = vertex.getConnections()[slot];
+                if (other == vertex) {
+                    continue;
+                }
+                double length = vertex.getRestLength(slot);
+                boolean split = length > targetEdgeLength * splitRatio && numberOfVertices < maximumVertices;
+                boolean collapse = length < targetEdgeLength * collapseRatio && numberOfVertices > minimumVertices;
+                if ((!split && !collapse) || !lockNeighbourhood(graph, locked, vertex.getVertexID(), other.getVertexID())) {
+                    continue;
+                }
+                if (split) {
+                    added.add(split(amoeba, vertex, slot, other, vertices.length + added.size()));
+                    numberOfVertices++;
+                    splits.incrementAndGet();
+                } else {
+                    collapse(amoeba, vertex, slot, other, graph, vertices);
+                    removed[other.getVertexID()] = true;
+                    numberOfRemoved++;
+                    numberOfVertices--;
+                    collapses.incrementAndGet();
+                }
+                break;
+            }
+        }
+        if (added.isEmpty() && numberOfRemoved == 0) {
+            return false;
+        }
+        Vertex[] newVertices = new Vertex[numberOfVertices];
+        int[] newIDs = new int[vertices.length];
+        boolean[] changed = new boolean[numberOfVertices];//everything locked was changed or rewired, or could have been
+        int next = 0;
+        for (Vertex vertex : vertices) {
+            int vertexID = vertex.getVertexID();
+            if (removed[vertexID]) {
+                vertex.markRemoved();//the render sync takes it out of the scene
+                newIDs[vertexID] = -1;
+            } else {
+                changed[next] = locked[vertexID];
+                newIDs[vertexID] = next;
+                newVertices[next++] = vertex;
+            }
+        }
+        for (Vertex vertex : added) {
+            changed[next] = true;
+            newVertices[next++] = vertex;
+        }
+        amoeba.replaceVertices(newVertices, newIDs, changed);
+        return true;
+    }
+
+    /**
+     * locks both ends of a connection and every vertex connected to them, unless one of them is already locked
+     * @param graph the connections of the amoeba at the start of the pass
+     * @param locked the vertices locked so far this pass
+     * @param a one end of the connection
+     * @param b the other end of the connection
+     * @return whether they could all be locked
+     */
+    private static boolean lockNeighbourhood(ConstraintGraph graph, boolean[] locked, int a, int b) {
+        if (locked[a] || locked[b]) {
+            return false;
+        }
+        for (int i = 0; i < graph.getDegree(a); i++) {
+            if (locked[graph.getNeighbour(a, i)]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < graph.getDegree(b); i++) {
+            if (locked[graph.getNeighbour(b, i)]) {
+                return false;
+            }
+        }
+        locked[a] = true;
+        locked[b] = true;
+        for (int i = 0; i < graph.getDegree(a); i++) {
+            locked[graph.getNeighbour(a, i)] = true;
+        }
+        for (int i = 0; i < graph.getDegree(b); i++) {
+            locked[graph.getNeighbour(b, i)] = true;
+        }
+        return true;
+    }
+
+    /**
+     * puts a new vertex in the middle of a connection. Both ends connect to the new vertex instead of each other, and it borrows the rest of its connections from them.
+     * The vertices it borrows can repeat, so any it's already connected to are skipped for the next free one near it
+     * @param amoeba the amoeba the connection belongs to
+     * @param a the vertex the connection belongs to
+     * @param slot the index of the connection in a
+     * @param b the vertex at the other end
+     * @param vertexID the index the new vertex will have until the vertices are renumbered
+     * @return the new vertex
+     */
+    private static Vertex split(Amoeba amoeba, Vertex a, int slot, Vertex b, int vertexID) {
+        double scaleFactor = a.getScaleFactor();
+        double halfLength = a.getRestLength(slot) / scaleFactor / 2;
+        Vertex middle = new Vertex(vertexID, a.getLocation().midpoint(b.getLocation()), amoeba.getDraw(), amoeba, amoeba.getGravity());
+        middle.setVelocity(a.getVelocity().midpoint(b.getVelocity()));
+        //sit on the surface rather than on the straight line between the two, so the amoeba stays round
+        Point3D delta = a.getInitialTargetDeltaFromCenter().midpoint(b.getInitialTargetDeltaFromCenter());
+        double deltaLength = (a.getInitialTargetDeltaFromCenter().magnitude() + b.getInitialTargetDeltaFromCenter().magnitude()) / 2;
+        middle.setInitialTargetDeltaFromCenter(delta.normalize().multiply(deltaLength), scaleFactor);
+
+        Vertex third = a.getConnections()[(slot + 1) % 3] != b ? a.getConnections()[(slot + 1) % 3] : a.getConnections()[(slot + 2) % 3];
+        middle.connectTo(0, a, halfLength);
+        middle.connectTo(1, b, halfLength);
+        Vertex[] borrowed = {third, a.getConnections()[3], b.getConnections()[3], b.getConnections()[4]};
+        for (int i = 2; i < middle.getConnections().length; i++) {
+            Vertex target = pickConnection(amoeba, middle, borrowed[i - 2], a, b);
+            middle.connectTo(i, target, middle.getLocation().distance(target.getLocation()) / scaleFactor);
+        }
+
+        a.connectTo(slot, middle, halfLength);
+        for (int i = 0; i < AmoebaTemplate.numberOfClosestConnections; i++) {
+            if (b.getConnections()[i] == a) {
+                b.connectTo(i, middle, halfLength);
+            }
+        }
+        return middle;
+    }
+
+    /**
+     * merges the two ends of a connection into the first one, at the middle of the connection. Everything connected to the second one is connected to the first
+     * instead, unless it's already connected to the first, then it gets another neighbour so no vertex is connected to the same vertex twice or to itself
+     * @param a the vertex that's kept
+     * @param slot the index of the connection in a
+     * @param b the vertex that's removed
+     * @param graph the connections of the amoeba at the start of the pass
+     * @param vertices the vertices of the amoeba at the start of the pass
+     */
+    private static void collapse(Amoeba amoeba, Vertex a, int slot, Vertex b, ConstraintGraph graph, Vertex[] vertices) {
+        b.markRemoved();//so nothing later in the pass picks it as a new connection
+        double scaleFactor = a.getScaleFactor();
+        Point3D delta = a.getInitialTargetDeltaFromCenter().midpoint(b.getInitialTargetDeltaFromCenter());
+        double deltaLength = (a.getInitialTargetDeltaFromCenter().magnitude() + b.getInitialTargetDeltaFromCenter().magnitude()) / 2;
+        a.setInitialTargetDeltaFromCenter(delta.normalize().multiply(deltaLength), scaleFactor);
+        a.setLocation(a.getLocation().midpoint(b.getLocation()));
+        a.setVelocity(a.getVelocity().midpoint(b.getVelocity()));
+
+        //everything that was connected to b is connected to a instead
+        int bID = b.getVertexID();
+        for (int i = 0; i < graph.getDegree(bID); i++) {
+            Vertex neighbour = vertices[graph.getNeighbour(bID, i)];
+            if (neighbour == a) {
+                continue;
+            }
+            Vertex[] connections = neighbour.getConnections();
+            for (int j = 0; j < connections.length; j++) {
+                if (connections[j] == b) {
+                    Vertex target = pickConnection(amoeba, neighbour, a, b);
+                    neighbour.connectTo(j, target, neighbour.getLocation().distance(target.getLocation()) / scaleFactor);
+                }
+            }
+        }
+        //a's own connections to b take over one of b's connections
+        Vertex[] connections = a.getConnections();
+        for (int i = 0; i < connections.length; i++) {
+            if (connections[i] != b) {
+                continue;
+            }
+            Vertex target = pickConnection(amoeba, a, null, b, b);
+            a.connectTo(i, target, a.getLocation().distance(target.getLocation()) / scaleFactor);
+        }
+    }
+
+    /**
+     * picks what one connection of a vertex should go to. The preferred vertex is used if it's free, a vertex is free if it isn't the vertex itself, isn't
+     * already one of its connections, and isn't the one being removed. Otherwise the first free connection of the vertices around it is used, and if they're
+     * all taken, the closest free vertex in the amoeba
+     * @param amoeba the amoeba the vertex belongs to
+     * @param vertex the vertex the connection belongs to
+     * @param preferred the vertex the connection should go to if it can, null if there isn't one
+     * @param around the vertex whose neighbourhood is searched first, the neighbourhood of the vertex itself is searched after it
+     * @param removed a vertex that's being removed and can't be used, null if there isn't one
+     * @return the vertex to connect to
+     */
+    private static Vertex pickConnection(Amoeba amoeba, Vertex vertex, Vertex preferred, Vertex around, Vertex removed) {
+        if (isFree(vertex, preferred, removed)) {
+            return preferred;
+        }
+        for (Vertex start : new Vertex[]{around, vertex}) {
+            for (Vertex candidate : start.getConnections()) {
+                if (isFree(vertex, candidate, removed)) {
+                    return candidate;
+                }
+            }
+            for (Vertex neighbour : start.getConnections()) {
+                if (neighbour == null) {
+                    continue;
+                }
+                for (Vertex candidate : neighbour.getConnections()) {
+                    if (isFree(vertex, candidate, removed)) {
+                        return candidate;
+                    }
+                }
+            }
+        }
+        Vertex closest = null;
+        for (Vertex candidate : amoeba.getVertices()) {
+            if (isFree(vertex, candidate, removed) && (closest == null || vertex.getLocation().distance(candidate.getLocation()) < vertex.getLocation().distance(closest.getLocation()))) {
+                closest = candidate;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * picks what one connection of a vertex should go to when there's no preferred vertex, searching around the given vertex first
+     * @param amoeba the amoeba the vertex belongs to
+     * @param vertex the vertex the connection belongs to
+     * @param around the vertex whose neighbourhood is searched first
+     * @param removed a vertex that's being removed and can't be used, null if there isn't one
+     * @return the vertex to connect to
+     */
+    private static Vertex pickConnection(Amoeba amoeba, Vertex vertex, Vertex around, Vertex removed) {
+        return pickConnection(amoeba, vertex, around, around, removed);
+    }
+
+    /**
+     * checks if a vertex can be given as a new connection
+     * @param vertex the vertex the connection belongs to
+     * @param candidate the vertex it would go to
+     * @param removed a vertex that's being removed, null if there isn't one
+     */
+    private static boolean isFree(Vertex vertex, Vertex candidate, Vertex removed) {
+        if (candidate == null || candidate == vertex || candidate == removed || candidate.isRemoved()) {
+            return false;
+        }
+        for (Vertex connection : vertex.getConnections()) {
+            if (connection == candidate) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * switches the remesher on or off
+     * @param enabled whether it should be on
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * returns whether the remesher is switched on
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * returns the total number of connections split since the game started
+     */
+    public long getSplits() {
+        return splits.get();
+    }
+
+    /**
+     * returns the total number of connections collapsed since the game started
+     */
+    public long getCollapses() {
+        return collapses.get();
+    }
+}
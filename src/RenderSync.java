@@ -0,0 +1,178 @@
+import javafx.geometry.Point3D;
+import javafx.scene.Node;
+
+/**
+ * Pushes the simulation state to the scene graph once at the end of every tick. Every entity remembers what it last pushed, and a node is only written to when
+ * it has moved further than a few pixels would be on screen at its distance from the camera. Far away nodes can drift further before they're updated, since
+ * the difference wouldn't be visible anyway
+ */
+public class RenderSync {
+    /**
+     * how many pixels a node can be off by before it gets updated
+     */
+    private final double pixelEpsilon;
+
+    /**
+     * decides which amoebas can be seen, null to draw all of them
+     */
+    private FrustumCuller culler;
+
+    /**
+     * the frame counter of the snapshot being pushed
+     */
+    private int frameCounter = 0;
+
+    /**
+     * the position of the camera this tick
+     */
+    private Point3D cameraPosition = Point3D.ZERO;
+
+    /**
+     * how many world units one pixel covers at a distance of 1 from the camera
+     */
+    private double worldUnitsPerPixel = 0;
+
+    /**
+     * how many nodes were checked this tick
+     */
+    private int nodesChecked = 0;
+
+    /**
+     * how many nodes were written to this tick
+     */
+    private int nodesWritten = 0;
+
+    /**
+     * how many nodes were checked last tick
+     */
+    private int lastTickNodesChecked = 0;
+
+    /**
+     * how many nodes were written to last tick
+     */
+    private int lastTickNodesWritten = 0;
+
+    /**
+     * Constructor for the render sync
+     *
+     * @param pixelEpsilon how many pixels a node can be off by before it gets updated
+     */
+    public RenderSync(double pixelEpsilon) {
+        this.pixelEpsilon = pixelEpsilon;
+    }
+
+    /**
+     * pushes every amoeba in a snapshot to the scene graph
+     *
+     * @param amoebas        the amoebas to push, in the same order as the snapshot
+     * @param snapshot       the state of the amoebas to push
+     * @param cameraPosition the position of the camera this tick
+     * @param fieldOfView    the vertical field of view of the camera in degrees
+     * @param viewportHeight the height of the scene in pixels
+     */
+    public void sync(Amoeba[] amoebas, WorldSnapshot snapshot, Point3D cameraPosition, double fieldOfView, double viewportHeight) {
+        GameEvents.SceneSync event = new GameEvents.SceneSync();
+        event.begin();
+        this.cameraPosition = cameraPosition;
+        frameCounter = snapshot.getFrameCounter();
+        // at distance d the screen covers 2 * d * tan(fov / 2) world units vertically
+        worldUnitsPerPixel = 2 * Math.tan(Math.toRadians(fieldOfView) / 2) / Math.max(1, viewportHeight);
+        for (int i = 0; i < amoebas.length; i++) {
+            amoebas[i].syncToScene(this, snapshot, i);
+        }
+        lastTickNodesChecked = nodesChecked;
+        lastTickNodesWritten = nodesWritten;
+        nodesChecked = 0;
+        nodesWritten = 0;
+        event.end();
+        if (event.shouldCommit()) {
+            event.tick = snapshot.getTick();
+            event.amoebas = amoebas.length;
+            event.nodesChecked = lastTickNodesChecked;
+            event.nodesWritten = lastTickNodesWritten;
+            event.commit();
+        }
+    }
+
+    /**
+     * checks whether an amoeba can be seen by the camera, amoebas that can't aren't pushed at all
+     *
+     * @param center the center of the amoeba
+     * @param radius the distance from the center to the furthest vertex
+     */
+    public boolean isInView(Point3D center, double radius) {
+        return culler == null || culler.isVisible(center, radius);
+    }
+
+    /**
+     * changes what decides which amoebas can be seen
+     *
+     * @param culler the culler to use, or null to draw every amoeba
+     */
+    public void setCuller(FrustumCuller culler) {
+        this.culler = culler;
+    }
+
+    /**
+     * checks whether the difference between what was last pushed and the current state would be visible. It doesn't count anything, since a line needs two
+     * checks, so the caller counts each node once with recordCheck
+     *
+     * @param pushed  the position that was last pushed to the node, or null if nothing has been pushed yet
+     * @param current the current position in the simulation
+     */
+    public boolean isDirty(Point3D pushed, Point3D current) {
+        if (pushed == null) {
+            return true;
+        }
+        double worldEpsilon = pixelEpsilon * worldUnitsPerPixel * current.distance(cameraPosition);
+        return pushed.distance(current) > worldEpsilon;
+    }
+
+    /**
+     * moves a node to a position and counts the write
+     *
+     * @param node     the node to move
+     * @param location where to move it to
+     */
+    public void moveNode(Node node, Point3D location) {
+        node.setTranslateX(location.getX());
+        node.setTranslateY(location.getY());
+        node.setTranslateZ(location.getZ());
+        nodesWritten++;
+    }
+
+    /**
+     * counts a node being checked, however many comparisons it took
+     */
+    public void recordCheck() {
+        nodesChecked++;
+    }
+
+    /**
+     * counts a write that was done by the entity itself, like redrawing a line
+     */
+    public void recordWrite() {
+        nodesWritten++;
+    }
+
+    /**
+     * returns the frame counter of the snapshot being pushed
+     */
+    public int getFrameCounter() {
+        return frameCounter;
+    }
+
+    /**
+     * returns how many nodes were checked last tick
+     */
+    public int getLastTickNodesChecked() {
+        return lastTickNodesChecked;
+    }
+
+    /**
+     * returns how many nodes were written to last tick
+     */
+    public int getLastTickNodesWritten() {
+        return lastTickNodesWritten;
+    }
+}
@@ -0,0 +1,92 @@
+import javafx.geometry.Point3D;
+
+/**
+ * Plays a game instead of someone at the keyboard, by pressing the same keys through a PlayerInput. It swims towards the closest food and away from any enemy
+ * that gets too close. It only changes its mind every few ticks, like a person would, so it isn't perfect
+ */
+public class ScriptedPlayer {
+    /** the game being played **/
+    private final Game game;
+
+    /** the keys it's holding down and the direction it's facing **/
+    private final PlayerInput input = new PlayerInput();
+
+    /** how many ticks pass between decisions **/
+    private final int reactionTicks;
+
+    /** an enemy this much further away than the two radii added together is close enough to run from **/
+    private final double dangerDistance;
+
+    /** the number of ticks since the last decision **/
+    private int ticksSinceDecision;
+
+    /**
+     * Constructor for the scripted player
+     * @param game the game to play
+     * @param reactionTicks how many ticks pass between decisions
+     * @param dangerDistance an enemy this much further away than the two radii added together is close enough to run from
+     */
+    public ScriptedPlayer(Game game, int reactionTicks, double dangerDistance) {
+        this.game = game;
+        this.reactionTicks = reactionTicks;
+        this.dangerDistance = dangerDistance;
+        ticksSinceDecision = reactionTicks;//decide straight away
+    }
+
+    /**
+     * returns the keys being held down and the direction being faced, pass this to the simulation every tick
+     */
+    public PlayerInput getInput() {
+        return input;
+    }
+
+    /**
+     * decides which way to swim, but only if it's time to make a new decision. Call this before every tick
+     */
+    public void think() {
+        if (++ticksSinceDecision < reactionTicks) {
+            return;
+        }
+        ticksSinceDecision = 0;
+        Amoeba player = game.getPlayer();
+        Point3D center = player.getTrueCenter();
+        Amoeba closestFood = null;
+        Amoeba closestEnemy = null;
+        double closestFoodDistance = Double.MAX_VALUE;
+        double closestEnemyDistance = Double.MAX_VALUE;
+        for (Amoeba amoeba : game.getAmoebas()) {
+            if (amoeba == player || !amoeba.isAlive()) {
+                continue;
+            }
+            double distance = center.distance(amoeba.getTrueCenter());
+            if (amoeba.getType() == 1 && distance < closestFoodDistance) {
+                closestFood = amoeba;
+                closestFoodDistance = distance;
+            } else if (amoeba.getType() == 2 && distance - amoeba.getRadius() < closestEnemyDistance) {
+                closestEnemy = amoeba;
+                closestEnemyDistance = distance - amoeba.getRadius();//big enemies are dangerous from further away
+            }
+        }
+        Point3D direction;
+        if (closestEnemy != null && closestEnemyDistance < player.getRadius() + dangerDistance) {//run away
+            direction = center.subtract(closestEnemy.getTrueCenter());
+        } else if (closestFood != null) {//chase
+            direction = closestFood.getTrueCenter().subtract(center);
+        } else {//nothing to do, stay put
+            input.release(PlayerInput.FORWARD);
+            input.release(PlayerInput.UP);
+            return;
+        }
+        if (direction.magnitude() == 0) {
+            return;
+        }
+        direction = direction.normalize();
+        input.setCameraDirection(direction);
+        input.press(PlayerInput.FORWARD);
+        if (direction.getY() < -0.3 || center.getY() > -20) {//swim up towards things above it, and off the floor
+            input.press(PlayerInput.UP);
+        } else {
+            input.release(PlayerInput.UP);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+import javafx.geometry.Point3D;
+import javafx.scene.transform.Rotate;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * One tick of the game, the player movement from the input and then the update of every amoeba. It doesn't touch the scene graph, so it can run on the JavaFX
+ * thread or on its own thread. The other amoebas can also be updated in parallel, since they only change themselves
+ */
+public class Simulation {
+    /** the game this simulates **/
+    private final Game game;
+
+    /** the number of ticks run so far **/
+    private long tick = 0;
+
+    /** the threads that update the non-player amoebas in parallel, null to update them one after another **/
+    private ForkJoinPool pool;
+
+    /** streams every snapshot to a file, null when nothing is being recorded **/
+    private volatile TelemetryRecorder telemetry;
+
+    /** the live counters every tick is recorded in, null when nobody is watching **/
+    private volatile GameMetrics metrics;
+
+    /**
+     * Constructor for the simulation
+     * @param game the game to simulate
+     */
+    public Simulation(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * changes how many threads update the amoebas
+     * @param threads the number of threads, 1 updates them one after another on the calling thread
+     */
+    public void setThreads(int threads) {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * starts or stops streaming the snapshot of every tick to a file
+     * @param telemetry the recorder to hand the snapshots to, null to stop
+     */
+    public void setTelemetry(TelemetryRecorder telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    /**
+     * returns the recorder the snapshots are streamed to, null if nothing is being recorded
+     */
+    public TelemetryRecorder getTelemetry() {
+        return telemetry;
+    }
+
+    /**
+     * starts or stops recording every tick in a set of live counters
+     * @param metrics the counters, null to stop
+     */
+    public void setMetrics(GameMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * runs one tick and returns a snapshot of the result
+     * @param input the keys held down and the camera direction
+     * @return a snapshot of the world after the tick
+     */
+    public WorldSnapshot tick(PlayerInput input) {
+        long start = System.nanoTime();
+        GameEvents.Tick event = new GameEvents.Tick();
+        event.begin();
+        game.advanceFrameCounter();//increment the frame counter and reset it when it's above 180
+        game.applyAmoebaChanges();//amoebas loaded or unloaded since the last tick join or leave now, so the array doesn't change during the tick
+        Amoeba[] amoebas = game.getAmoebas();
+        int keys = input.getKeys();
+        Point3D difference = input.getCameraDirection();
+        if ((keys & PlayerInput.FORWARD) != 0) {
+            amoebas[0].addPlayerMovement(difference.multiply(2)); //add the difference between the camera position and amoeba position
+        }
+        if ((keys & PlayerInput.BACKWARD) != 0) {
+            amoebas[0].addPlayerMovement(difference.multiply(-2)); //subtract the difference between the camera position and amoeba position
+        }
+        if ((keys & PlayerInput.LEFT) != 0) {
+            amoebas[0].addPlayerMovement(difference.crossProduct(Rotate.Y_AXIS).normalize().multiply(2));// add the cross product of the difference and Y axis to velocity. Cross product returns the vector perpendicular to two others
+        }
+        if ((keys & PlayerInput.RIGHT) != 0) {
+            amoebas[0].addPlayerMovement(difference.crossProduct(Rotate.Y_AXIS).normalize().multiply(-2));// subtract the cross product of the difference and Y axis to velocity
+        }
+        if ((keys & PlayerInput.UP) != 0) {
+            amoebas[0].addPlayerMovement(new Point3D(0, -2.5, 0));// add to the y velocity, a bit higher to counteract gravity
+        }
+        if ((keys & PlayerInput.DOWN) != 0) {
+            amoebas[0].addPlayerMovement(new Point3D(0, 1.5, 0));// subtract from the y velocity
+        }
+        for (Amoeba amoeba : amoebas) {//the amoebas check each other for contact along these paths, never along the centers being changed this tick
+            amoeba.saveLastPath();
+        }
+        //one of the most important lines, this accesses the model and updates the amoeba positions then the positions of all vertices
+        if (pool == null) {
+            for (Amoeba amoeba : amoebas) {
+                amoeba.updateAmoebaPosition();
+            }
+        } else {
+            //the player changes the hp and type of the amoebas it touches, so it goes first on its own. The others only change themselves and read each other's
+            //saved paths, so they end up the same as when they update one after another
+            amoebas[0].updateAmoebaPosition();
+            pool.submit(() -> Arrays.stream(amoebas, 1, amoebas.length).parallel().forEach(Amoeba::updateAmoebaPosition)).join();
+        }
+        FluidGrid fluid = game.getFluidGrid();
+        if (fluid != null) {//the amoebas push the water once they've all moved, then the water moves on for the next tick
+            fluid.step(amoebas, game.getTimeScale());
+        }
+        game.dispatchEvents();//react to everything that changed this tick at once
+        game.getPhysicsSolver().endTick();
+        tick++;
+        WorldSnapshot snapshot = new WorldSnapshot(amoebas, tick, game.getFrameCounter());
+        TelemetryRecorder telemetry = this.telemetry;
+        if (telemetry != null) {
+            telemetry.record(snapshot);//never waits for the disk
+        }
+        GameMetrics metrics = this.metrics;
+        if (metrics != null) {
+            //one step per amoeba, unless adaptive substepping split some of them
+            int steps = game.getPhysicsSolver() instanceof AdaptiveSolver adaptiveSolver ? adaptiveSolver.getLastTickSubsteps() : amoebas.length;
+            metrics.recordTick(System.nanoTime() - start, amoebas, steps);
+        }
+        event.end();
+        if (event.shouldCommit()) {//counting the vertices is only worth it if the event is kept
+            event.tick = tick;
+            event.frameCounter = game.getFrameCounter();
+            event.amoebas = amoebas.length;
+            for (Amoeba amoeba : amoebas) {
+                if (amoeba.isAlive()) {
+                    event.aliveAmoebas++;
+                }
+                event.vertices += amoeba.getVertices().length;
+            }
+            event.commit();
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the simulation on its own thread at 60 ticks a second, so a slow physics tick doesn't hold up rendering or input. After every tick the newest snapshot
+ * replaces the old one, and the JavaFX thread just draws whatever is newest
+ */
+public class SimulationThread {
+    /** how long one tick should take, 60 ticks a second **/
+    private static final long tickNanos = 1_000_000_000L / 60;
+
+    /** the simulation to run **/
+    private final Simulation simulation;
+
+    /** the input from the JavaFX thread **/
+    private final PlayerInput input;
+
+    /** the snapshot from the newest tick, null until the first tick has finished **/
+    private final AtomicReference<WorldSnapshot> latestSnapshot = new AtomicReference<>();
+
+    /** runs the ticks, null while stopped **/
+    private ScheduledExecutorService scheduler;
+
+    /** the scheduler that was last stopped, its last tick may still be running. Null if it was never stopped **/
+    private ScheduledExecutorService stopping;
+
+    /**
+     * Constructor for the simulation thread
+     * @param simulation the simulation to run
+     * @param input the input from the JavaFX thread
+     */
+    public SimulationThread(Simulation simulation, PlayerInput input) {
+        this.simulation = simulation;
+        this.input = input;
+    }
+
+    /**
+     * starts running ticks on the simulation thread
+     */
+    public void start() {
+        if (scheduler != null) {
+            return;
+        }
+        ScheduledExecutorService previous = stopping;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "simulation");
+            thread.setDaemon(true);//don't keep the game open after the window closes
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            if (previous != null && !previous.isTerminated()) {//started again before the last tick of the old thread finished, skip until it has
+                return;
+            }
+            try {
+                latestSnapshot.set(simulation.tick(input));
+            } catch (RuntimeException e) {//an exception would silently cancel every future tick, so print it and keep going
+                e.printStackTrace();
+            }
+        }, 0, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * stops running ticks. It doesn't wait for the current one to finish, so it's safe to call from the JavaFX thread. Check isIdle before running ticks anywhere else
+     */
+    public void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        stopping = scheduler;
+        scheduler = null;
+    }
+
+    /**
+     * returns whether no tick is running or about to run on the simulation thread, so the caller can safely run ticks itself
+     */
+    public boolean isIdle() {
+        return scheduler == null && (stopping == null || stopping.isTerminated());
+    }
+
+    /**
+     * returns whether ticks are running on the simulation thread
+     */
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+
+    /**
+     * returns the snapshot from the newest tick, or null if no tick has finished yet
+     */
+    public WorldSnapshot getLatestSnapshot() {
+        return latestSnapshot.get();
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * The original solver, every vertex adds spring forces to its velocity and then moves along it. It's cheap but becomes unstable when the time scale is above 3
+ */
+public class SpringSolver implements PhysicsSolver {
+    /**
+     * for each vertex apply all necessary forces, such as spring forces to the connected vertices and gravity
+     *
+     * @param amoeba        the amoeba whose vertices should be moved
+     * @param timeStep      how far forward in time to move, normally the time scale
+     * @param frameFraction the fraction of a frame this step covers, the spring forces are per frame so they get scaled by this
+     */
+    @Override
+    public void step(Amoeba amoeba, double timeStep, double frameFraction) {
+        for (Vertex vertex : amoeba.getVertices()) {
+            vertex.applyForces(timeStep, frameFraction);
+        }
+    }
+}
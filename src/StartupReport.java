@@ -0,0 +1,57 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records how long each phase of starting the game took. Phases finish on different threads (textures on the JavaFX thread, the world on worker threads),
+ * so recording is synchronized. Once every expected phase has finished, the report is printed
+ */
+public class StartupReport {
+    /**
+     * the time the game started, all phases are also reported relative to this
+     */
+    private final long startTime = System.nanoTime();
+
+    /**
+     * how many phases need to finish before the report is printed
+     */
+    private final int expectedPhases;
+
+    /**
+     * one line per finished phase, in the order they finished
+     */
+    private final List<String> lines = new ArrayList<>();
+
+    /**
+     * Constructor for the startup report
+     *
+     * @param expectedPhases how many phases need to finish before the report is printed
+     */
+    public StartupReport(int expectedPhases) {
+        this.expectedPhases = expectedPhases;
+    }
+
+    /**
+     * records that a phase has finished, and prints the report if it was the last one
+     *
+     * @param phase      the name of the phase
+     * @param phaseStart the value of System.nanoTime() when the phase started
+     */
+    public synchronized void record(String phase, long phaseStart) {
+        long now = System.nanoTime();
+        lines.add(String.format("  %-24s %8.1f ms  (done at %8.1f ms, %s)", phase, (now - phaseStart) / 1e6, (now - startTime) / 1e6, Thread.currentThread().getName()));
+        if (lines.size() == expectedPhases) {
+            print();
+        }
+    }
+
+    /**
+     * prints every phase that has finished so far
+     */
+    public synchronized void print() {
+        System.out.println("Startup timing:");
+        for (String line : lines) {
+            System.out.println(line);
+        }
+        System.out.printf("  %-24s %8.1f ms%n", "total", (System.nanoTime() - startTime) / 1e6);
+    }
+}
@@ -0,0 +1,226 @@
+import javafx.geometry.Point3D;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A command line load generator that runs the simulation without a window. It spawns N amoebas with M vertices each, using the same Amoeba constructor as the
+ * game, runs a fixed number of ticks, and reports ticks per second, the 99th percentile tick time, the allocation rate, and heap usage. It sweeps every
+ * combination of amoeba counts, vertex counts and thread counts, and writes one CSV row per combination so the results can be plotted as a scaling curve.
+ * Run it before upgrades to catch regressions in updateAmoebaPosition and applyForces.
+ * <p>
+ * Usage: java StressTest [--amoebas 8,32,128] [--vertices 60,120,200] [--threads 1,2,4] [--ticks 600] [--warmup 120] [--solver spring|pbd]
+ * [--adaptive true|false] [--time-scale 1.5] [--seed 1] [--out stress.csv] [--telemetry true|false]
+ * [--fluid 0|8|16|32]
+ */
+public class StressTest {
+    /** the JavaFX logger, kept in a field because loggers that nothing references can be garbage collected along with their level **/
+    private static final Logger javafxLogger = Logger.getLogger("javafx");
+    /** the number of amoebas in each run **/
+    private int[] amoebaCounts = {8, 32, 128};
+    /** the number of vertices per amoeba in each run **/
+    private int[] vertexCounts = {60, 120, 200};
+    /** the number of threads updating amoebas in each run **/
+    private int[] threadCounts = {1, 2, Runtime.getRuntime().availableProcessors()};
+    /** the number of ticks that are measured in each run **/
+    private int ticks = 600;
+    /** the number of ticks run before measuring, so the JIT has compiled the hot code **/
+    private int warmupTicks = 120;
+    /** spring or pbd **/
+    private String solver = "spring";
+    /** whether to wrap the solver in adaptive substepping **/
+    private boolean adaptive = true;
+    /** the time scale to run at **/
+    private double timeScale = 1.5;
+    /** the seed for the amoeba positions and sizes, so runs can be compared **/
+    private long seed = 1;
+    /** the file to write the CSV to **/
+    private String outputFile = "stress.csv";
+    /** whether to stream every measured tick, vertices included, to a telemetry file, to see what recording costs the simulation **/
+    private boolean telemetry = false;
+    /** the resolution of the fluid grid the amoebas swim in, 0 for still water **/
+    private int fluidResolution = 0;
+
+    /**
+     * main method, parses the arguments and runs the sweep
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws IOException {
+        //nothing is ever rendered, so use the software pipeline rather than probing for OpenGL, and the warnings about 3D not being supported are just noise
+        System.setProperty("prism.order", "sw");
+        javafxLogger.setLevel(Level.OFF);
+        StressTest stressTest = new StressTest();
+        stressTest.parseArguments(args);
+        stressTest.run();
+    }
+
+    /**
+     * reads the command line arguments into the settings
+     * @param args the command line arguments
+     */
+    private void parseArguments(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--amoebas" -> amoebaCounts = parseList(value);
+                case "--vertices" -> vertexCounts = parseList(value);
+                case "--threads" -> threadCounts = parseList(value);
+                case "--ticks" -> ticks = Integer.parseInt(value);
+                case "--warmup" -> warmupTicks = Integer.parseInt(value);
+                case "--solver" -> solver = value;
+                case "--adaptive" -> adaptive = Boolean.parseBoolean(value);
+                case "--time-scale" -> timeScale = Double.parseDouble(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--out" -> outputFile = value;
+                case "--telemetry" -> telemetry = Boolean.parseBoolean(value);
+                case "--fluid" -> fluidResolution = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    /**
+     * turns a comma separated list into an array of ints
+     * @param list the list, like 1,2,4
+     */
+    private static int[] parseList(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(value -> Integer.parseInt(value.trim())).toArray();
+    }
+
+    /**
+     * runs every combination of amoeba count, vertex count, and thread count, printing each result and writing it to the CSV
+     */
+    private void run() throws IOException {
+        try (PrintWriter csv = new PrintWriter(new FileWriter(outputFile))) {
+            csv.println("amoebas,vertices,threads,ticks,ticks_per_second,mean_tick_ms,p99_tick_ms,max_tick_ms,allocation_mb_per_second,heap_used_mb,heap_peak_mb,substeps_per_tick");
+            System.out.printf("%8s %8s %8s %12s %10s %10s %12s %10s%n", "amoebas", "vertices", "threads", "ticks/sec", "p99 ms", "alloc MB/s", "heap MB", "substeps");
+            for (int amoebaCount : amoebaCounts) {
+                for (int vertexCount : vertexCounts) {
+                    for (int threadCount : threadCounts) {
+                        String row = runScenario(amoebaCount, vertexCount, threadCount);
+                        csv.println(row);
+                        csv.flush();
+                    }
+                }
+            }
+        }
+        System.out.println("Wrote " + outputFile);
+    }
+
+    /**
+     * builds a world, runs it, and measures it
+     * @param amoebaCount the number of amoebas
+     * @param vertexCount the number of vertices per amoeba
+     * @param threadCount the number of threads updating amoebas
+     * @return the CSV row for this run
+     */
+    private String runScenario(int amoebaCount, int vertexCount, int threadCount) throws IOException {
+        Game game = buildWorld(amoebaCount, vertexCount);
+        Simulation simulation = new Simulation(game);
+        simulation.setThreads(threadCount);
+        if (game.getFluidGrid() != null) {
+            game.getFluidGrid().setThreads(threadCount);
+        }
+        PlayerInput input = new PlayerInput();//nobody is pressing any keys
+        for (int i = 0; i < warmupTicks; i++) {
+            game.setTimeScale(timeScale);//winning or losing slows time down, which would skew the numbers
+            simulation.tick(input);
+        }
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        TelemetryRecorder recorder = null;
+        if (telemetry) {
+            recorder = new TelemetryRecorder(Path.of("stress-" + amoebaCount + "-" + vertexCount + "-" + threadCount + ".amwt"), 1024, true);
+            simulation.setTelemetry(recorder);
+        }
+        long[] tickNanos = new long[ticks];
+        long allocatedBefore = allocatedBytes();
+        int substeps = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            game.setTimeScale(timeScale);
+            long tickStart = System.nanoTime();
+            simulation.tick(input);
+            tickNanos[i] = System.nanoTime() - tickStart;
+            if (game.getPhysicsSolver() instanceof AdaptiveSolver adaptiveSolver) {
+                substeps += adaptiveSolver.getLastTickSubsteps();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        simulation.setThreads(1);//shuts down the pool
+        if (game.getFluidGrid() != null) {
+            game.getFluidGrid().setThreads(1);
+        }
+        if (recorder != null) {
+            simulation.setTelemetry(null);
+            recorder.close();
+            System.out.printf("telemetry: %d ticks written, %d dropped, %.1f MB%n", recorder.getWritten(), recorder.getDropped(), recorder.getBytesWritten() / 1e6);
+        }
+
+        Arrays.sort(tickNanos);
+        double seconds = elapsed / 1e9;
+        double ticksPerSecond = ticks / seconds;
+        double meanMillis = Arrays.stream(tickNanos).average().orElse(0) / 1e6;
+        double p99Millis = tickNanos[Math.min(ticks - 1, (int) Math.ceil(ticks * 0.99) - 1)] / 1e6;
+        double maxMillis = tickNanos[ticks - 1] / 1e6;
+        double allocationRate = allocated / 1e6 / seconds;
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        double heapUsed = heap.getUsed() / 1e6;
+        double heapPeak = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed()).sum() / 1e6;
+        double substepsPerTick = adaptive ? (double) substeps / ticks : amoebaCount;
+        System.out.printf("%8d %8d %8d %12.1f %10.3f %10.1f %12.1f %10.1f%n", amoebaCount, vertexCount, threadCount, ticksPerSecond, p99Millis, allocationRate, heapUsed, substepsPerTick);
+        return String.format("%d,%d,%d,%d,%.2f,%.4f,%.4f,%.4f,%.2f,%.2f,%.2f,%.2f", amoebaCount, vertexCount, threadCount, ticks, ticksPerSecond, meanMillis, p99Millis, maxMillis,
+                allocationRate, heapUsed, heapPeak, substepsPerTick);
+    }
+
+    /**
+     * creates the amoebas the same way the game does, the player first, then the rest at random positions and sizes within the play area
+     * @param amoebaCount the number of amoebas
+     * @param vertexCount the number of vertices per amoeba
+     * @return the game holding the amoebas
+     */
+    private Game buildWorld(int amoebaCount, int vertexCount) {
+        PhysicsSolver baseSolver = solver.equals("pbd") ? new PositionBasedSolver(4) : new SpringSolver();
+        Game game = new Game(adaptive ? new AdaptiveSolver(baseSolver) : baseSolver, timeScale);
+        game.setSeed(seed);
+        Random random = game.getRandom();
+        if (fluidResolution > 0) {
+            game.setFluidGrid(FluidGrid.standard(fluidResolution));
+        }
+        game.setAmoebas(new Amoeba[amoebaCount]);
+        Amoeba[] amoebas = game.getAmoebas();
+        amoebas[0] = new Amoeba(game, vertexCount, 25, null, new Point3D(0, -100, 0));//player, never drawn
+        for (int i = 1; i < amoebaCount; i++) {
+            Point3D center = new Point3D(random.nextDouble() * 1000 - 500, -50 - random.nextDouble() * 450, random.nextDouble() * 1000 - 500);
+            amoebas[i] = new Amoeba(game, vertexCount, 10 + random.nextInt(41), null, center);
+        }
+        return game;
+    }
+
+    /**
+     * returns the total number of bytes allocated by every live thread, the simulation threads included
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean sunThreadBean && sunThreadBean.isThreadAllocatedMemorySupported()) {
+            return Arrays.stream(sunThreadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())).filter(bytes -> bytes > 0).sum();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,72 @@
+import javafx.geometry.Point3D;
+
+/**
+ * Collision tests that look at the whole path something took during a step rather than only where it ended up. Checking only the end of the step lets fast
+ * vertices sink deep into the floor before they're caught, and lets small amoebas pass straight through each other when the time scale is high
+ */
+public final class SweptCollision {
+    /** the floor is everything with a y of 0 or more, y goes down **/
+    public static final double floorY = 0;
+
+    /** how far above the floor something that hits it is kept **/
+    public static final double floorClearance = 1;
+
+    /**
+     * only static helpers
+     */
+    private SweptCollision() {
+    }
+
+    /**
+     * checks if a point has gone into the floor
+     * @param location where the point is
+     */
+    public static boolean isInFloor(Point3D location) {
+        return location.getY() >= floorY;
+    }
+
+    /**
+     * finds where a point that went into the floor during a step ends up if it bounces off the floor where its path hit it, rather than stopping wherever
+     * the end of the step left it. The part of the step that would have been under the floor is mirrored back above it, and it's kept at least
+     * floorClearance above the floor
+     * @param from where the step started
+     * @param to where the step ended, under the floor
+     * @return where it ends up after bouncing
+     */
+    public static Point3D bounceOffFloor(Point3D from, Point3D to) {
+        double y;
+        if (from.getY() >= floorY) {//it started under the floor, there's nothing to bounce off so just lift it out
+            y = floorY - floorClearance;
+        } else {
+            double depth = to.getY() - floorY;//how far past the floor the step would have gone
+            y = Math.min(floorY - depth, floorY - floorClearance);
+        }
+        return new Point3D(to.getX(), y, to.getZ());
+    }
+
+    /**
+     * finds how far apart two spheres were when they were closest during a step, assuming both centers moved in a straight line at a steady speed. Two small
+     * amoebas that swapped sides during one step were touching halfway through even though they're apart at both ends, and the direction between them at
+     * that moment is the one to push them apart along, not the direction at the end of the step, which would push them further through each other
+     * @param aFrom where the first center started
+     * @param aTo where the first center ended
+     * @param bFrom where the second center started
+     * @param bTo where the second center ended
+     * @return the first center minus the second at the moment they were closest, its length is the smallest distance between them
+     */
+    public static Point3D closestApproach(Point3D aFrom, Point3D aTo, Point3D bFrom, Point3D bTo) {
+        //work relative to the second center, so only one point is moving
+        double startX = aFrom.getX() - bFrom.getX();
+        double startY = aFrom.getY() - bFrom.getY();
+        double startZ = aFrom.getZ() - bFrom.getZ();
+        double moveX = (aTo.getX() - aFrom.getX()) - (bTo.getX() - bFrom.getX());
+        double moveY = (aTo.getY() - aFrom.getY()) - (bTo.getY() - bFrom.getY());
+        double moveZ = (aTo.getZ() - aFrom.getZ()) - (bTo.getZ() - bFrom.getZ());
+        double moveLengthSquared = moveX * moveX + moveY * moveY + moveZ * moveZ;
+        double t = 0;
+        if (moveLengthSquared > 0) {//the point on the relative path closest to the second center, kept within the step
+            t = Math.max(0, Math.min(1, -(startX * moveX + startY * moveY + startZ * moveZ) / moveLengthSquared));
+        }
+        return new Point3D(startX + moveX * t, startY + moveY * t, startZ + moveZ * t);
+    }
+}
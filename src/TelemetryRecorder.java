@@ -0,0 +1,248 @@
+import javafx.geometry.Point3D;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Streams the state of every tick to a file for offline analysis. The simulation hands over the snapshot it already made at the end of the tick, which is
+ * immutable, so handing it over is just storing a reference in a ring buffer. A background thread takes the snapshots out of the ring, packs them into a
+ * binary buffer and writes it to a FileChannel. The simulation thread never waits for the disk, if the writer falls so far behind that the ring is full the
+ * snapshot is dropped and counted instead.
+ * <p>
+ * The file is little endian. It starts with a header: the bytes AMWT, an int version (2), and an int that is 1 if vertex positions are included. After that
+ * there is one record per tick: an int with the number of bytes in the rest of the record, a long tick, an int frame counter, an int number of amoebas, and
+ * then for each amoeba an int id, a byte type, a byte that is 1 if it's alive, floats for the true center x, y and z, a float radius and a float hp. If vertex
+ * positions are included each amoeba is followed by an int number of vertices and floats for the x, y and z of each vertex. Amoebas join and leave as chunks
+ * load and unload, which moves the others along in the array, so match amoebas between ticks by id rather than by position in the record. Version 1 had no ids
+ */
+public class TelemetryRecorder {
+    /** the version written in the header, changes whenever the layout does **/
+    private static final int version = 2;
+
+    /** the number of bytes in the record for one amoeba, not counting its vertices **/
+    private static final int amoebaBytes = Integer.BYTES + 2 + 5 * Float.BYTES;
+
+    /** the snapshots waiting to be written, the size is a power of two so the index can be masked **/
+    private final AtomicReferenceArray<WorldSnapshot> ring;
+
+    /** the number of slots minus one, masks a count into an index **/
+    private final int mask;
+
+    /** the number of snapshots ever put into the ring, only the simulation thread changes it **/
+    private final AtomicLong head = new AtomicLong();
+
+    /** the number of snapshots ever taken out of the ring, only the writer thread changes it **/
+    private final AtomicLong tail = new AtomicLong();
+
+    /** whether the position of every vertex is written as well as the amoebas **/
+    private final boolean includeVertices;
+
+    /** the file being written **/
+    private final FileChannel channel;
+
+    /** the thread that writes to the file **/
+    private final Thread writer;
+
+    /** the records packed but not yet written, grows if a single record doesn't fit **/
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+    /** the number of snapshots dropped because the ring was full **/
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** the number of snapshots written to the file **/
+    private final AtomicLong written = new AtomicLong();
+
+    /** the number of bytes written to the file **/
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    /** set when the recorder is closed, the writer finishes what's in the ring and stops **/
+    private volatile boolean closed;
+
+    /** set while record is between checking closed and publishing the slot, so close can wait until nothing more can be put in the ring **/
+    private volatile boolean recording;
+
+    /** the error that stopped the writer, null if it hasn't failed **/
+    private volatile IOException failure;
+
+    /**
+     * Constructor for the telemetry recorder, opens the file and starts the writer thread
+     * @param file the file to write to, replaced if it exists
+     * @param capacity the number of ticks that can wait to be written before they're dropped, rounded up to a power of two
+     * @param includeVertices whether to write the position of every vertex as well as the amoebas
+     */
+    public TelemetryRecorder(Path file, int capacity, boolean includeVertices) throws IOException {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        ring = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        this.includeVertices = includeVertices;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.put((byte) 'A').put((byte) 'M').put((byte) 'W').put((byte) 'T');
+        buffer.putInt(version);
+        buffer.putInt(includeVertices ? 1 : 0);
+        writer = new Thread(this::writeLoop, "telemetry-writer");
+        writer.setDaemon(true);//don't keep the game open after the window closes
+        writer.start();
+    }
+
+    /**
+     * hands over the snapshot of a tick to be written. Never waits, if the ring is full the snapshot is dropped and counted. Only call this from one thread
+     * at a time, the thread running the ticks
+     * @param snapshot the snapshot taken at the end of the tick
+     * @return whether the snapshot will be written
+     */
+    public boolean record(WorldSnapshot snapshot) {
+        recording = true;//set before closed is checked, so a close that starts now waits for this to finish
+        try {
+            long next = head.get();
+            if (closed || next - tail.get() > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            ring.set((int) (next & mask), snapshot);
+            head.set(next + 1);//publishes the slot to the writer
+            return true;
+        } finally {
+            recording = false;
+        }
+    }
+
+    /**
+     * takes snapshots out of the ring and writes them until the recorder is closed and the ring is empty
+     */
+    private void writeLoop() {
+        try {
+            while (true) {
+                long next = tail.get();
+                if (next == head.get()) {//nothing waiting
+                    if (closed && next == head.get()) {//look again after seeing closed, a snapshot may have been published in between
+                        break;
+                    }
+                    flush();//write what's packed while there's time, rather than holding it until the buffer is full
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    continue;
+                }
+                int index = (int) (next & mask);
+                WorldSnapshot snapshot = ring.get(index);
+                ring.set(index, null);//let the snapshot be garbage collected
+                tail.set(next + 1);//frees the slot for the simulation
+                pack(snapshot);
+                written.incrementAndGet();
+            }
+            flush();
+        } catch (IOException e) {
+            failure = e;
+            closed = true;//nothing more can be written, so drop everything from now on
+        }
+    }
+
+    /**
+     * packs one snapshot into the buffer, writing the buffer out first if the record doesn't fit
+     * @param snapshot the snapshot to pack
+     */
+    private void pack(WorldSnapshot snapshot) throws IOException {
+        int amoebas = snapshot.getNumberOfAmoebas();
+        int size = Long.BYTES + 2 * Integer.BYTES + amoebas * amoebaBytes;
+        if (includeVertices) {
+            for (int i = 0; i < amoebas; i++) {
+                size += Integer.BYTES + snapshot.getVertexLocations(i).length * 3 * Float.BYTES;
+            }
+        }
+        if (buffer.remaining() < Integer.BYTES + size) {
+            flush();
+            if (buffer.capacity() < Integer.BYTES + size) {
+                buffer = ByteBuffer.allocateDirect(Integer.BYTES + size).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+        buffer.putInt(size);
+        buffer.putLong(snapshot.getTick());
+        buffer.putInt(snapshot.getFrameCounter());
+        buffer.putInt(amoebas);
+        for (int i = 0; i < amoebas; i++) {
+            Point3D center = snapshot.getTrueCenter(i);
+            buffer.putInt(snapshot.getAmoebas()[i].getId());//the id never changes, so it's safe to read off the amoeba itself
+            buffer.put((byte) snapshot.getType(i));
+            buffer.put((byte) (snapshot.isAlive(i) ? 1 : 0));
+            buffer.putFloat((float) center.getX());
+            buffer.putFloat((float) center.getY());
+            buffer.putFloat((float) center.getZ());
+            buffer.putFloat((float) snapshot.getRadius(i));
+            buffer.putFloat((float) snapshot.getHp(i));
+            if (includeVertices) {
+                Point3D[] locations = snapshot.getVertexLocations(i);
+                buffer.putInt(locations.length);
+                for (Point3D location : locations) {
+                    buffer.putFloat((float) location.getX());
+                    buffer.putFloat((float) location.getY());
+                    buffer.putFloat((float) location.getZ());
+                }
+            }
+        }
+    }
+
+    /**
+     * writes everything packed so far to the file
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten.addAndGet(channel.write(buffer));
+        }
+        buffer.clear();
+    }
+
+    /**
+     * stops taking snapshots, waits for the writer to write everything already in the ring, and closes the file. This waits for the disk, so don't call it
+     * from the JavaFX thread
+     */
+    public void close() throws IOException {
+        closed = true;
+        while (recording) {//a record that checked closed before it was set may still be publishing its slot
+            Thread.onSpinWait();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //nothing can be published now, so anything the writer didn't take before it stopped, or because it failed, will never be written
+        long left = head.get() - tail.get();
+        for (long i = tail.get(); i < head.get(); i++) {
+            ring.set((int) (i & mask), null);
+        }
+        tail.set(head.get());
+        dropped.addAndGet(left);
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * returns the number of snapshots dropped because the writer had fallen behind
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * returns the number of snapshots written to the file
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * returns the number of bytes written to the file, the header included
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+}
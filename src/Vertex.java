@@ -7,7 +7,7 @@ import javafx.scene.shape.Sphere;
 import javafx.scene.transform.Rotate;
 import javafx.scene.transform.Translate;
 
-import java.util.Arrays;
+import java.util.Random;
 
 public class Vertex {
     /**
@@ -35,6 +35,11 @@ public class Vertex {
      */
     private Point3D initialTargetDeltaFromCenter;
 
+    /**
+     * The factor the amoeba has been scaled by, used to scale the target distances between vertices
+     */
+    private double scaleFactor = 1;
+
     /**
      * Used to scale the spring force between vertices
      */
@@ -64,7 +69,17 @@ public class Vertex {
     /**
      * Represents the index of this vertex
      */
-    private final int vertexID;
+    private int vertexID;
+
+    /**
+     * Whether the remesher has taken this vertex out of its amoeba, set on the simulation thread and read by the render sync
+     */
+    private volatile boolean removed = false;
+
+    /**
+     * Whether the sphere and drawn lines are in the group, only touched on the JavaFX thread once the group is in the scene
+     */
+    private boolean attachedToScene = false;
 
     /**
      * The group to draw things to
@@ -72,14 +87,30 @@ public class Vertex {
     private final Group draw;
 
     /**
-     * The sphere representing the vertex
+     * The sphere representing the vertex, null until the vertex is first attached to the scene so amoebas that are never drawn don't pay for it
      */
-    private final Sphere sphere;
+    private Sphere sphere;
 
     /**
-     * The lines between vertices
+     * Only the lines to the 3 closest vertices are drawn
      */
-    Cylinder[] connectionLines = new Cylinder[6];
+    private final int numberOfDrawnLines = 3;
+
+    /**
+     * The lines to the closest vertices, made along with the sphere
+     */
+    Cylinder[] connectionLines = new Cylinder[numberOfDrawnLines];
+
+    /**
+     * The location last pushed to the sphere, null until the first push
+     */
+    private Point3D pushedLocation;
+
+    /**
+     * The locations of this vertex and the connected vertex last pushed to each drawn line
+     */
+    private final Point3D[] pushedLineFrom = new Point3D[numberOfDrawnLines];
+    private final Point3D[] pushedLineTo = new Point3D[numberOfDrawnLines];
 
     /**
      * Each vertex connects to 6 others, the 4 closest and 2 random
@@ -97,30 +128,83 @@ public class Vertex {
     int normalizedIndexForFrameCounter;
 
     /**
-     * Constructor for the vertex, it initializes instance variables and creates the sphere that represents that vertex
+     * Constructor for the vertex, it initializes instance variables.
+     * The sphere and lines aren't made until attachToScene is called, so vertices can be made on the simulation thread and amoebas that are never drawn don't need them
      *
      * @param vertexID the index of that vertex in the vertices array of the amoeba
      * @param location the point in 3d space that represents the vertex location
-     * @param draw     the group to draw the sphere and connection lines to
+     * @param draw     the group to draw the sphere and connection lines to, null if the amoeba isn't drawn
      * @param amoeba   the parent amoeba
      * @param gravity  the force of gravity to apply to this vertex
-     * @param type     the type of amoeba this vertex belongs to
      */
 
-    public Vertex(int vertexID, Point3D location, Group draw, Amoeba amoeba, double gravity, int type) {
+    public Vertex(int vertexID, Point3D location, Group draw, Amoeba amoeba, double gravity) {
         velocity = new Point3D(0, 0, 0);
         this.gravity = gravity;
         this.vertexID = vertexID;
         this.amoeba = amoeba;
         this.location = location;
         this.draw = draw;
-        normalizedIndexForFrameCounter = (int) (vertexID / 200) * 180;//there are max 200 vertices and max 180 frames in the frame counter, this puts the vert number within the 180 frames of the frame counter
-        sphere = new Sphere(2, 10);
+        normalizedIndexForFrameCounter = frameSlot(vertexID);
+    }
+
+    /**
+     * adds the sphere and the drawn lines to the group, making them the first time. Called once the connections are made
+     *
+     * @param type the type of amoeba this vertex belongs to, decides the colour
+     */
+    public void attachToScene(int type) {
+        if (sphere == null) {
+            sphere = new Sphere(2, 10);
+            sphere.setTranslateX(location.getX());
+            sphere.setTranslateY(location.getY());
+            sphere.setTranslateZ(location.getZ());
+            pushedLocation = location;
+            for (int i = 0; i < numberOfDrawnLines; i++) {
+                connectionLines[i] = createLine(location, connections[i].getLocation());
+            }
+        }
         changeVertexColour(type);
-        sphere.setTranslateX(location.getX());
-        sphere.setTranslateY(location.getY());
-        sphere.setTranslateZ(location.getZ());
         draw.getChildren().add(sphere);
+        for (int i = 0; i < numberOfDrawnLines; i++) {
+            draw.getChildren().add(connectionLines[i]);
+        }
+        attachedToScene = true;
+    }
+
+    /**
+     * takes the sphere and the drawn lines back out of the group, used when the remesher removes this vertex
+     */
+    public void detachFromScene() {
+        if (!attachedToScene) {
+            return;
+        }
+        draw.getChildren().remove(sphere);
+        for (int i = 0; i < numberOfDrawnLines; i++) {
+            draw.getChildren().remove(connectionLines[i]);
+        }
+        attachedToScene = false;
+    }
+
+    /**
+     * returns whether the sphere and the drawn lines are in the group
+     */
+    public boolean isAttachedToScene() {
+        return attachedToScene;
+    }
+
+    /**
+     * marks this vertex as taken out of its amoeba by the remesher, the render sync detaches it from the scene
+     */
+    public void markRemoved() {
+        removed = true;
+    }
+
+    /**
+     * returns whether the remesher has taken this vertex out of its amoeba
+     */
+    public boolean isRemoved() {
+        return removed;
     }
 
     /**
@@ -129,16 +213,19 @@ public class Vertex {
      * @param type the type of amoeba this vertex belongs to
      */
     public void changeVertexColour(int type) {
+        if (sphere == null) {//never been drawn
+            return;
+        }
         if (type == 0) {
-            PhongMaterial material = new PhongMaterial();
+            PhongMaterial material = GameMetrics.newMaterial();
             material.setDiffuseColor(Color.rgb(50, 50, 240));
             sphere.setMaterial(material);
         } else if (type == 1) {
-            PhongMaterial material = new PhongMaterial();
+            PhongMaterial material = GameMetrics.newMaterial();
             material.setDiffuseColor(Color.rgb(90, 240, 90));
             sphere.setMaterial(material);
         } else if (type == 2) {
-            PhongMaterial material = new PhongMaterial();
+            PhongMaterial material = GameMetrics.newMaterial();
             material.setDiffuseColor(Color.rgb(240, 90, 90));
             sphere.setMaterial(material);
         } else {
@@ -157,9 +244,28 @@ public class Vertex {
      */
 
     public void moveVerticesAwayFromCenter(double scaleFactor) {
+        this.scaleFactor = scaleFactor;
         targetDeltaFromCenter = initialTargetDeltaFromCenter.multiply(scaleFactor);
     }
 
+    /**
+     * gives this vertex a new position relative to the center, used by the remesher for vertices it adds or merges
+     *
+     * @param initialTargetDeltaFromCenter the position relative to the center before the amoeba was scaled
+     * @param scaleFactor                  the factor the amoeba is currently scaled by
+     */
+    public void setInitialTargetDeltaFromCenter(Point3D initialTargetDeltaFromCenter, double scaleFactor) {
+        this.initialTargetDeltaFromCenter = initialTargetDeltaFromCenter;
+        moveVerticesAwayFromCenter(scaleFactor);
+    }
+
+    /**
+     * returns the position this vertex tries to stay at relative to the center, before the amoeba was scaled
+     */
+    public Point3D getInitialTargetDeltaFromCenter() {
+        return initialTargetDeltaFromCenter;
+    }
+
     /**
      * returns the location of this vertex
      */
@@ -167,6 +273,99 @@ public class Vertex {
         return location;
     }
 
+    /**
+     * moves this vertex to a new location, used by solvers that work on positions rather than forces
+     *
+     * @param location the new location of the vertex
+     */
+    public void setLocation(Point3D location) {
+        this.location = location;
+    }
+
+    /**
+     * returns the velocity of this vertex
+     */
+    public Point3D getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * changes the velocity of this vertex
+     *
+     * @param velocity the new velocity
+     */
+    public void setVelocity(Point3D velocity) {
+        this.velocity = velocity;
+    }
+
+    /**
+     * returns the position this vertex is trying to stay at relative to the center of the amoeba
+     */
+    public Point3D getTargetDeltaFromCenter() {
+        return targetDeltaFromCenter;
+    }
+
+    /**
+     * returns the distance this vertex wants to keep from one of its connections, scaled by the size of the amoeba
+     *
+     * @param index the index of the connection
+     */
+    public double getRestLength(int index) {
+        return targetDistance[index] * scaleFactor;
+    }
+
+    /**
+     * returns the factor the amoeba has been scaled by
+     */
+    public double getScaleFactor() {
+        return scaleFactor;
+    }
+
+    /**
+     * returns the shortest distance this vertex wants to keep from one of its closest connections, used to judge how far it can safely move in one step
+     */
+    public double getShortestRestLength() {
+        double shortest = Double.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            shortest = Math.min(shortest, getRestLength(i));
+        }
+        return shortest;
+    }
+
+    /**
+     * returns the parent amoeba
+     */
+    public Amoeba getAmoeba() {
+        return amoeba;
+    }
+
+    /**
+     * returns the index of this vertex in the vertices array of the amoeba
+     */
+    public int getVertexID() {
+        return vertexID;
+    }
+
+    /**
+     * changes the index of this vertex, the remesher renumbers the vertices when it adds or removes some
+     *
+     * @param vertexID the new index of this vertex in the vertices array of the amoeba
+     */
+    public void setVertexID(int vertexID) {
+        this.vertexID = vertexID;
+        normalizedIndexForFrameCounter = frameSlot(vertexID);
+    }
+
+    /**
+     * picks the frame a vertex redraws its line heights on. The frame counter goes from 0 to 180, and the remesher allows up to 600 vertices, so the index
+     * wraps around the 181 frames, which always lands on a frame the counter reaches and spreads the vertices over all of them
+     *
+     * @param vertexID the index of the vertex
+     */
+    private static int frameSlot(int vertexID) {
+        return vertexID % 181;
+    }
+
     /**
      * returns the connections this vertex has to others
      */
@@ -182,6 +381,19 @@ public class Vertex {
      */
     public void setConnection(int index, Vertex vertex) {
         connections[index] = vertex;
+        targetDistance[index] = location.distance(vertex.getLocation());//keep the target distance in step with the connection, otherwise it would keep the distance of whatever was in that slot before
+    }
+
+    /**
+     * changes a vertex connection and gives it a rest length. Used by the remesher, where the current distance between the vertices isn't the distance they should keep
+     *
+     * @param index          the index of the connection to change
+     * @param vertex         the new vertex to connect to
+     * @param baseRestLength the distance to keep before the amoeba was scaled
+     */
+    public void connectTo(int index, Vertex vertex, double baseRestLength) {
+        connections[index] = vertex;
+        targetDistance[index] = baseRestLength;
     }
 
     /**
@@ -195,8 +407,13 @@ public class Vertex {
 
     /**
      * This calculates all the forces that act on this vertex, including connections to other vertices, distance to center, gravity, dampening, and difference between current and relative position to center
+     *
+     * @param timeStep     how far to move the vertex along its velocity, normally the time scale
+     * @param stepFraction the fraction of a frame this step covers, forces and dampening are scaled by it so splitting a frame into several steps doesn't make the forces stronger
      */
-    public void applyForces() {
+    public void applyForces(double timeStep, double stepFraction) {
+        double springScalar = this.springScalar * stepFraction;
+        double centerSpringScalar = this.centerSpringScalar * stepFraction;
         int counter = 0;
         for (Vertex currentVertex : connections) { //for all the vertices this one is connected to
             if (counter < 3) {//temporarily disabled connections to random vertices(vertices 4 and 5) because they cause the amoeba to become unstable when it gets too big
@@ -213,8 +430,6 @@ public class Vertex {
                         }
                     }
                 }
-
-                redrawLine(connectionLines[counter], currentVertex.getLocation(), location);//redraw the connection between vertices
             }
             counter++;
         }
@@ -228,61 +443,76 @@ public class Vertex {
             velocity = velocity.subtract(positionDelta.multiply(centerSpringScalar));//otherwise subtract the difference
             amoeba.addVelocity(positionDelta.multiply(centerSpringScalar * 0.5));//and apply force to the amoeba target center
         }
-        if (location.getY() >= 0) { //if this vert hits the ground
-            location = new Point3D(location.getX(), -1, location.getZ());//move it 1 unit above ground
-            velocity = new Point3D(velocity.getX(), velocity.getY() * -1, velocity.getZ()); //reverse the y velocity
+        velocity = velocity.add(targetDeltaFromCenter.subtract(location.subtract(amoeba.getTargetCenter())).multiply(0.001 * stepFraction)); //find where it is relative to the center, where it should be relative to the center, take the difference of those two, multiply it by a scalar, and add it to velocity. Basically, make it try to stay in the same position relative ot the center.
+        velocity = velocity.subtract(new Point3D(0, gravity * stepFraction, 0)); //subtract gravity from velocity
+        Point3D current = amoeba.getCurrent();
+        velocity = current.add(velocity.subtract(current).multiply(stepFraction == 1 ? dampening : Math.pow(dampening, stepFraction))); // apply dampening, which drags it towards moving with the water
+        Point3D nextLocation = location.add(velocity.multiply(timeStep));//add the velocity to location
+        if (SweptCollision.isInFloor(nextLocation)) { //if this vert hits the ground during the step, bounce it where it hit rather than letting it sink in until the next step. A vertex that starts in the ground is lifted out here too
+            nextLocation = SweptCollision.bounceOffFloor(location, nextLocation);
+            velocity = new Point3D(velocity.getX(), -Math.abs(velocity.getY()), velocity.getZ()); //reverse the y velocity
             amoeba.addVelocity(new Point3D(0, velocity.getY() * 0.6, 0));//add opposite force to the amoeba target center
         }
-        velocity = velocity.add(targetDeltaFromCenter.subtract(location.subtract(amoeba.getTargetCenter())).multiply(0.001)); //find where it is relative to the center, where it should be relative to the center, take the difference of those two, multiply it by a scalar, and add it to velocity. Basically, make it try to stay in the same position relative ot the center.
-        velocity = velocity.subtract(new Point3D(0, gravity, 0)); //subtract gravity from velocity
-        velocity = velocity.multiply(dampening); // apply dampening
-        location = location.add(velocity.multiply(AmoebaWars.timeScale));//add the velocity to location
-        sphere.setTranslateX(location.getX());//move the sphere that represents the vertex
-        sphere.setTranslateY(location.getY());
-        sphere.setTranslateZ(location.getZ());
+        location = nextLocation;
+    }
+
+    /**
+     * pushes the location of this vertex to its sphere and the lines to its closest connections, but only the ones that have visibly moved since the last push
+     *
+     * @param renderSync      decides what has visibly moved
+     * @param vertexLocations the locations of every vertex in the amoeba from a snapshot
+     * @param lineTargets     for every vertex in the snapshot, the indexes of the vertices its drawn lines go to
+     * @param index           the index of this vertex in the snapshot, the vertex ID may have changed since it was taken
+     * @param refreshHeights  whether to update the line heights this frame anyway, used when the amoeba was culled and missed its height frame
+     */
+    public void syncToScene(RenderSync renderSync, Point3D[] vertexLocations, int[] lineTargets, int index, boolean refreshHeights) {
+        Point3D location = vertexLocations[index];
+        boolean heightDue = refreshHeights || renderSync.getFrameCounter() == normalizedIndexForFrameCounter;//the height is only updated on one frame, so lines have to be redrawn then even if they haven't moved much
+        renderSync.recordCheck();
+        if (renderSync.isDirty(pushedLocation, location)) {
+            renderSync.moveNode(sphere, location);
+            pushedLocation = location;
+        }
+        for (int i = 0; i < numberOfDrawnLines; i++) {
+            Point3D from = vertexLocations[lineTargets[index * numberOfDrawnLines + i]];
+            renderSync.recordCheck();//one line, even though both of its ends are compared
+            if (renderSync.isDirty(pushedLineFrom[i], from) || renderSync.isDirty(pushedLineTo[i], location) || heightDue) {
+                redrawLine(connectionLines[i], from, location, heightDue);
+                renderSync.recordWrite();
+                pushedLineFrom[i] = from;
+                pushedLineTo[i] = location;
+            }
+        }
     }
 
     /**
-     * adjacent
-     * find 3 closest points and connect them
+     * connect to the 3 closest points, which come from the template for this number of vertices since they're the same for every amoeba of that size
      * after that connect three random points. Without the three random points the vertices tend to slide along the surface of the sphere, causing it to lose shape
      * after that, find the position relative to the center and assign it to a variable. The vertex will have the delta between this point, and it's position added to velocity.  This is to further reduce hte likelihood of points bunching up on one side of the amoeba when force is applied.
+     *
+     * @param template the template for this number of vertices
+     * @param radius   the radius the template is scaled by
+     * @param random   picks the three random points, seeded ones connect the same points every time
      */
-    public void connectToAdjacentVertices() {
-        for (int i = 0; i < 3; i++) {//search for the closest point 3 times
-            double minDistance = amoeba.getRadius();
-            int currentIndex = -1;
-            int indexCounter = 0;
-            for (Vertex currentVertex : amoeba.getVertices()) {
-
-                if (Arrays.stream(connections).noneMatch(vertex -> currentVertex.equals(vertex)) && currentVertex != this) {//if the vertex current being assessed is not this vertex or one it's already connected to
-                    double distance = location.distance(currentVertex.getLocation().getX(), currentVertex.getLocation().getY(), currentVertex.getLocation().getZ());//calculate the distance between the two
-                    if (distance < minDistance) {//if it's less than the min distance assign it as the new closest point
-                        minDistance = distance;
-                        currentIndex = indexCounter;
-                        connections[i] = currentVertex;
-                        targetDistance[i] = distance;
-                    }
-                }
-                indexCounter++;
-            }
-            //this excessively long line just creates a cylinder that connects two vertices
-            connectionLines[i] = createLine(new Point3D(location.getX(), location.getY(), location.getZ()), new Point3D(amoeba.getVertices()[currentIndex].getLocation().getX(), amoeba.getVertices()[currentIndex].getLocation().getY(), amoeba.getVertices()[currentIndex].getLocation().getZ()));
-            draw.getChildren().add(connectionLines[i]);//add the line to the connection lines for this vert
-            amoeba.getVertices()[currentIndex].setConnection(amoeba.getVertices()[currentIndex].getConnections().length - 1, this);//set the connection for the vertex this one connects to as well, saves some time by not doing it twice
-            //System.out.println("vertex " + vertexID + " position " + i +  " connected to " + currentIndex);
+    public void connectUsingTemplate(AmoebaTemplate template, double radius, Random random) {
+        Vertex[] vertices = amoeba.getVertices();
+        for (int i = 0; i < AmoebaTemplate.numberOfClosestConnections; i++) {
+            connections[i] = vertices[template.getClosest(vertexID, i)];
+            targetDistance[i] = template.getClosestDistance(vertexID, i) * radius;
         }
         int numberOfRandomConnections = 3;//how many random connections to add
         for (int i = 0; i < numberOfRandomConnections; i++) {//add three random connections, this is to create forces within the sphere that help keep the points in the same position relative to each other
-            int randomVert = 1 + (int) (Math.random() * amoeba.getVertices().length - 1);
-            connections[numberOfRandomConnections + i] = amoeba.getVertices()[randomVert];
-            targetDistance[numberOfRandomConnections + i] = location.distance(connections[numberOfRandomConnections + i].getLocation().getX(), connections[numberOfRandomConnections + i].getLocation().getY(), connections[numberOfRandomConnections + i].getLocation().getZ());//set the target distance between the points
-            connectionLines[numberOfRandomConnections + i] = createLine(new Point3D(location.getX(), location.getY(), location.getZ()), new Point3D(connections[numberOfRandomConnections + i].getLocation().getX(), connections[numberOfRandomConnections + i].getLocation().getY(), connections[numberOfRandomConnections].getLocation().getZ()));//create a new line between the two vertices
+            int randomVert = 1 + random.nextInt(vertices.length - 1);
+            connections[numberOfRandomConnections + i] = vertices[randomVert];
+            targetDistance[numberOfRandomConnections + i] = location.distance(vertices[randomVert].getLocation());
+        }
+        //the closest connections of the vertex connected to this one afterwards, it takes over the last slot
+        if (template.getBackLink(vertexID) >= 0) {
+            setConnection(connections.length - 1, vertices[template.getBackLink(vertexID)]);
         }
         //find the initial difference in position from the center
         targetDeltaFromCenter = location.subtract(amoeba.getTargetCenter());
         initialTargetDeltaFromCenter = targetDeltaFromCenter;
-
     }
 
     /**
@@ -321,23 +551,31 @@ public class Vertex {
     /**
      * re-draws the cylinder that's used to draw the line between vertices
      *
-     * @param cylinder the cylinder to modify
-     * @param from     the starting point
-     * @param to       the ending point
+     * @param cylinder     the cylinder to modify
+     * @param from         the starting point
+     * @param to           the ending point
+     * @param updateHeight whether to change the height of the cylinder as well
      */
-    public void redrawLine(Cylinder cylinder, Point3D from, Point3D to) { // same as createCylinder but this just redraws it
+    public void redrawLine(Cylinder cylinder, Point3D from, Point3D to, boolean updateHeight) { // same as createCylinder but this changes the existing transforms instead of making new ones
         Point3D yAxis = new Point3D(0, 1, 0);
         Point3D seg = from.subtract(to);
         double height = seg.magnitude();
         Point3D midpoint = from.midpoint(to);
-        Translate moveToMidpoint = new Translate(midpoint.getX(), midpoint.getY(), midpoint.getZ());
         Point3D axisOfRotation = seg.crossProduct(yAxis);
         double angle = Math.acos(seg.normalize().dotProduct(yAxis));
-        Rotate rotateAroundCenter = new Rotate(-Math.toDegrees(angle), axisOfRotation);
-        if (AmoebaWars.frameCounter == normalizedIndexForFrameCounter) { // setting the cylinder height causes a big hit to performance so only do it once per 180 frames per cylinder. Which frame depends on the vert index
+        if (updateHeight) { // setting the cylinder height causes a big hit to performance so only do it once per 180 frames per cylinder. Which frame depends on the vert index
             cylinder.setHeight(height); //cause huge performance drop
+            GameMetrics.countSetHeight();
+        }
+        // createLine added the translate first and the rotate second
+        Translate moveToMidpoint = (Translate) cylinder.getTransforms().get(0);
+        Rotate rotateAroundCenter = (Rotate) cylinder.getTransforms().get(1);
+        moveToMidpoint.setX(midpoint.getX());
+        moveToMidpoint.setY(midpoint.getY());
+        moveToMidpoint.setZ(midpoint.getZ());
+        if (axisOfRotation.magnitude() > 0) { // a line that's exactly vertical has no axis, keep the old one, the angle is 0 or 180 anyway
+            rotateAroundCenter.setAxis(axisOfRotation);
         }
-        cylinder.getTransforms().clear();
-        cylinder.getTransforms().addAll(moveToMidpoint, rotateAroundCenter);
+        rotateAroundCenter.setAngle(-Math.toDegrees(angle));
     }
 }
@@ -0,0 +1,190 @@
+import javafx.geometry.Point3D;
+
+/**
+ * An immutable copy of everything the scene graph needs from one tick of the simulation. The simulation thread makes one at the end of every tick and the
+ * JavaFX thread draws whichever one is newest. Points are immutable, so copying the references is enough
+ */
+public class WorldSnapshot {
+    /** the number of the tick this was taken after **/
+    private final long tick;
+    /** the frame counter at the end of the tick **/
+    private final int frameCounter;
+    /** the amoebas this is a copy of, the game makes a new array when amoebas join or leave so this always matches the rest of the snapshot **/
+    private final Amoeba[] amoebas;
+    /** the target center of every amoeba **/
+    private final Point3D[] targetCenters;
+    /** the true center of every amoeba **/
+    private final Point3D[] trueCenters;
+    /** the radius of every amoeba **/
+    private final double[] radii;
+    /** the distance from the true center to the furthest vertex of every amoeba **/
+    private final double[] boundingRadii;
+    /** the hp of every amoeba **/
+    private final double[] hp;
+    /** the type of every amoeba **/
+    private final int[] types;
+    /** the colour every amoeba should be drawn in, usually the same as the type except when the player is flashing **/
+    private final int[] colours;
+    /** whether every amoeba is alive **/
+    private final boolean[] alive;
+    /** the vertices of every amoeba, the remesher swaps in a new array rather than changing the old one so the reference is enough **/
+    private final Vertex[][] vertices;
+    /** the location of every vertex of every amoeba **/
+    private final Point3D[][] vertexLocations;
+    /** for every vertex of every amoeba, the indexes of the vertices its drawn lines go to **/
+    private final int[][] lineTargets;
+
+    /**
+     * copies the state of the amoebas
+     * @param amoebas the amoebas to copy
+     * @param tick the number of the tick
+     * @param frameCounter the frame counter at the end of the tick
+     */
+    public WorldSnapshot(Amoeba[] amoebas, long tick, int frameCounter) {
+        this.tick = tick;
+        this.frameCounter = frameCounter;
+        this.amoebas = amoebas;
+        targetCenters = new Point3D[amoebas.length];
+        trueCenters = new Point3D[amoebas.length];
+        radii = new double[amoebas.length];
+        boundingRadii = new double[amoebas.length];
+        hp = new double[amoebas.length];
+        types = new int[amoebas.length];
+        colours = new int[amoebas.length];
+        alive = new boolean[amoebas.length];
+        this.vertices = new Vertex[amoebas.length][];
+        vertexLocations = new Point3D[amoebas.length][];
+        lineTargets = new int[amoebas.length][];
+        for (int i = 0; i < amoebas.length; i++) {
+            Amoeba amoeba = amoebas[i];
+            targetCenters[i] = amoeba.getTargetCenter();
+            trueCenters[i] = amoeba.getTrueCenter();
+            radii[i] = amoeba.getRadius();
+            hp[i] = amoeba.getHp();
+            types[i] = amoeba.getType();
+            colours[i] = amoeba.getColour();
+            alive[i] = amoeba.isAlive();
+            Vertex[] vertices = amoeba.getVertices();
+            this.vertices[i] = vertices;
+            vertexLocations[i] = new Point3D[vertices.length];
+            lineTargets[i] = new int[vertices.length * AmoebaTemplate.numberOfClosestConnections];
+            double boundingRadius = 0;
+            for (int j = 0; j < vertices.length; j++) {
+                vertexLocations[i][j] = vertices[j].getLocation();
+                for (int k = 0; k < AmoebaTemplate.numberOfClosestConnections; k++) {
+                    lineTargets[i][j * AmoebaTemplate.numberOfClosestConnections + k] = vertices[j].getConnections()[k].getVertexID();
+                }
+                boundingRadius = Math.max(boundingRadius, vertexLocations[i][j].distance(trueCenters[i]));
+            }
+            boundingRadii[i] = boundingRadius;
+        }
+    }
+
+    /** returns the number of the tick this was taken after **/
+    public long getTick() {
+        return tick;
+    }
+
+    /** returns the frame counter at the end of the tick **/
+    public int getFrameCounter() {
+        return frameCounter;
+    }
+
+    /** returns the amoebas this is a copy of, in the same order as everything else in the snapshot **/
+    public Amoeba[] getAmoebas() {
+        return amoebas;
+    }
+
+    /** returns the number of amoebas **/
+    public int getNumberOfAmoebas() {
+        return types.length;
+    }
+
+    /**
+     * returns the target center of an amoeba
+     * @param index the index of the amoeba
+     */
+    public Point3D getTargetCenter(int index) {
+        return targetCenters[index];
+    }
+
+    /**
+     * returns the true center of an amoeba
+     * @param index the index of the amoeba
+     */
+    public Point3D getTrueCenter(int index) {
+        return trueCenters[index];
+    }
+
+    /**
+     * returns the radius of an amoeba
+     * @param index the index of the amoeba
+     */
+    public double getRadius(int index) {
+        return radii[index];
+    }
+
+    /**
+     * returns the distance from the true center to the furthest vertex of an amoeba
+     * @param index the index of the amoeba
+     */
+    public double getBoundingRadius(int index) {
+        return boundingRadii[index];
+    }
+
+    /**
+     * returns the hp of an amoeba
+     * @param index the index of the amoeba
+     */
+    public double getHp(int index) {
+        return hp[index];
+    }
+
+    /**
+     * returns the type of an amoeba
+     * @param index the index of the amoeba
+     */
+    public int getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * returns the colour an amoeba should be drawn in
+     * @param index the index of the amoeba
+     */
+    public int getColour(int index) {
+        return colours[index];
+    }
+
+    /**
+     * returns whether an amoeba is alive
+     * @param index the index of the amoeba
+     */
+    public boolean isAlive(int index) {
+        return alive[index];
+    }
+
+    /**
+     * returns the vertices of an amoeba as they were when the snapshot was taken
+     * @param index the index of the amoeba
+     */
+    public Vertex[] getVertices(int index) {
+        return vertices[index];
+    }
+
+    /**
+     * returns the locations of the vertices of an amoeba, in the same order as getVertices
+     * @param index the index of the amoeba
+     */
+    public Point3D[] getVertexLocations(int index) {
+        return vertexLocations[index];
+    }
+
+    /**
+     * returns the indexes of the vertices the drawn lines of every vertex go to, three for each vertex in the same order as getVertices
+     * @param index the index of the amoeba
+     */
+    public int[] getLineTargets(int index) {
+        return lineTargets[index];
+    }
+}